@@ -0,0 +1,5007 @@
+package hotel;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.*;
+import java.net.http.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.text.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// PDFBox imports
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.*;
+import org.apache.pdfbox.pdmodel.font.*;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+// H2 (embedded database storage)
+import org.h2.jdbcx.JdbcConnectionPool;
+
+public class HotelReservationSystem {
+
+    // Files, relative to the data directory (-Dhrs.dataDir, default: working directory)
+    private static final Path DATA_DIR = Paths.get(System.getProperty("hrs.dataDir", "."));
+    private static final Path ROOMS_CSV = DATA_DIR.resolve("rooms.csv");
+    private static final Path BOOKINGS_CSV = DATA_DIR.resolve("bookings.csv");
+    private static final Path BOOKINGS_JOURNAL = DATA_DIR.resolve("bookings.journal");
+    private static final Path BOOKINGS_JOURNAL_OLD = DATA_DIR.resolve("bookings.journal.old");
+    private static final Path ROOMS_BIN = DATA_DIR.resolve("rooms.bin");
+    private static final Path BOOKINGS_BIN = DATA_DIR.resolve("bookings.bin");
+    private static final Path BOOKINGS_DIR = DATA_DIR.resolve("bookings");
+    private static final Path RATES_CSV = DATA_DIR.resolve("rates.csv");
+
+    // Booking storage: one snapshot file (default) or one segment per check-in month (-Dhrs.storage=monthly).
+    // Monthly storage keeps only the last -Dhrs.hotMonths months (default 3) and the future in memory;
+    // older months load on demand and are stored gzip-compressed. See MonthlyPartitions.
+    // -Dhrs.storage=h2 keeps rooms and bookings in an embedded H2 database instead (see DatabaseStorage):
+    // -Dhrs.dbUrl (default <dataDir>/hotel.mv.db), pooled over at most -Dhrs.dbPool connections.
+    private static final String STORAGE = System.getProperty("hrs.storage", "snapshot");
+    private static final boolean PARTITIONED = "monthly".equalsIgnoreCase(STORAGE);
+    private static final boolean DATABASE = "h2".equalsIgnoreCase(STORAGE);
+    private static final int HOT_MONTHS = Integer.getInteger("hrs.hotMonths", 3);
+    private static final String DB_URL = System.getProperty("hrs.dbUrl", "jdbc:h2:" + DATA_DIR.toAbsolutePath().normalize().resolve("hotel"));
+    private static final int DB_POOL = Integer.getInteger("hrs.dbPool", 8);
+
+    // Snapshot format: "csv" (default) or "binary" (-Dhrs.snapshot=binary). In binary mode snapshots
+    // are written as fixed-width records and read through a MappedByteBuffer; an existing CSV file
+    // is still picked up when it is newer than the binary one, so CSV remains the import path.
+    private static final boolean BINARY_SNAPSHOT = "binary".equalsIgnoreCase(System.getProperty("hrs.snapshot", "csv"));
+
+    // Journal mode: bookings/cancellations are appended to BOOKINGS_JOURNAL instead of rewriting
+    // BOOKINGS_CSV; a background compaction folds the journal into the snapshot.
+    // Disable with -Dhrs.journal=false to get the old rewrite-on-every-change behaviour.
+    private static final boolean JOURNAL_MODE = Boolean.parseBoolean(System.getProperty("hrs.journal", "true"));
+    private static final long COMPACT_THRESHOLD_BYTES = 1 << 20;
+    private static final int COMPACT_CHECK_MS = 60_000;
+
+    // Live sync (-Dhrs.sync=true): instances sharing the data directory pick up each other's changes from
+    // the journal as they happen. Needs journal mode and file storage. See LiveSync.
+    private static final boolean SYNC = Boolean.getBoolean("hrs.sync");
+
+    // Metrics dump (see Metrics): every -Dhrs.metricsInterval seconds, 0 disables it.
+    private static final Path METRICS_CSV = DATA_DIR.resolve("metrics.csv");
+    private static final int METRICS_INTERVAL_SECS = Integer.getInteger("hrs.metricsInterval", 60);
+
+    // Date format
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // Longest stay the GUI and the HTTP API accept
+    static final int MAX_NIGHTS = 365;
+
+    // In-memory data
+    static final BookingEngine engine = new BookingEngine();
+    static final Analytics analytics = new Analytics(engine);
+    static final Pricing pricing = new Pricing(analytics);
+    static BookingJournal journal = null;
+    static MonthlyPartitions partitions = null;
+    static LiveSync sync = null;
+    static final Storage storage = DATABASE ? new DatabaseStorage(DB_URL, DB_POOL, HOT_MONTHS) : new FileStorage();
+
+    // Current logged-in user
+    static User currentUser = null;
+
+    // Default admin credentials
+    static final String ADMIN_USER = "admin";
+    static final String ADMIN_PASS = "admin123";
+
+    // Swing components (kept at top-level for simplicity)
+    private JFrame frame;
+    private JTable roomsTable, availTable, bookingsTableAdmin;
+    private RoomsTableModel roomsModel;
+    private AvailabilityTableModel availModel;
+    private CalendarTableModel calModel;
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    private SearchTableModel searchModel;
+    private BookingsTableModel bookingsAdminModel;
+    private JTextField roomNumberField, roomTypeField, roomPriceField;
+    private JSpinner bookDateSpinner, bookNightsSpinner;
+    private JComboBox<Room> bookRoomCombo;
+    private JTextField customerNameField;
+    private JTextField searchRoomField, searchMinPriceField, searchMaxPriceField;
+    private JTextField adminFromField, adminToField, adminRoomField, adminCustomerField;
+    private JLabel adminCountLabel;
+    private List<String[]> dashboardRows = Collections.emptyList();
+    private String dashboardTitle = "";
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--loadgen")) {
+            String base = args.length > 1 ? args[1] : "http://localhost:8080";
+            int secs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            int conc = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+            try { LoadGenerator.run(base, secs, conc); } catch (Exception e) { e.printStackTrace(); }
+            return;
+        }
+
+        Metrics.publish(METRICS_CSV, METRICS_INTERVAL_SECS);
+
+        try { storage.open(); } catch (Exception e) { e.printStackTrace(); System.exit(1); }
+        if (SYNC) {
+            if (!(storage instanceof FileStorage) || !JOURNAL_MODE) System.err.println("Live sync needs file storage in journal mode; running without it");
+            else try { sync = new LiveSync(DATA_DIR, BOOKINGS_JOURNAL); } catch (IOException e) { e.printStackTrace(); }
+        }
+
+        // load persisted data
+        loadRooms();
+        loadBookings();
+        loadRates();
+
+        // create admin default room sample if no rooms
+        if (!engine.hasRooms()) {
+            engine.addRoom(new Room(101, "Single", 1200.0));
+            engine.addRoom(new Room(102, "Double", 1800.0));
+            engine.addRoom(new Room(201, "Deluxe", 3000.0));
+        }
+
+        if (JOURNAL_MODE && storage instanceof FileStorage) openJournal();
+        attachPersistence();
+        if (sync != null) sync.start(journalReplayedTo);
+
+        if (args.length > 1 && args[0].equals("--import")) {
+            try {
+                BookingImporter.Result res = BookingImporter.parse(Paths.get(args[1]), ForkJoinPool.commonPool());
+                res.mergeInto();
+                if (res.accepted > 0) saveBookings();
+                System.out.println(res.summary());
+                res.rejected.stream().limit(100).forEach(System.out::println);
+            } catch (Exception e) { e.printStackTrace(); }
+            if (journal != null) journal.close();
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            try { HttpApi.start(port); } catch (IOException e) { e.printStackTrace(); System.exit(1); }
+            return;
+        }
+
+        SwingUtilities.invokeLater(() -> new HotelReservationSystem().showLoginDialog());
+    }
+
+    // ---------- Models ----------
+    static class Room {
+        int number;
+        String type;
+        double price;
+        Room(int number, String type, double price) { this.number = number; this.type = type; this.price = price; }
+    }
+
+    // A stay: date is the check-in night, checkOut is exclusive (the departure day).
+    // Single-date bookings are one-night stays.
+    static class Booking {
+        int roomNumber;
+        String customer;
+        LocalDate date;
+        LocalDate checkOut;
+        int customerId = -1;  // assigned by the engine's CustomerDirectory
+        double amount = Double.NaN;  // total quoted by Pricing when booked; NaN for stays booked before rate plans
+        Booking(int roomNumber, String customer, LocalDate date) { this(roomNumber, customer, date, date.plusDays(1)); }
+        Booking(int roomNumber, String customer, LocalDate date, LocalDate checkOut) { this.roomNumber = roomNumber; this.customer = customer; this.date = date; this.checkOut = checkOut; }
+        int nights() { return (int) (checkOut.toEpochDay() - date.toEpochDay()); }
+        // What the stay is worth: its stored quote, or the room's flat price for older stays.
+        double total(Room r) { return !Double.isNaN(amount) ? amount : r != null ? r.price * nights() : 0; }
+        boolean covers(LocalDate d) { return !d.isBefore(date) && d.isBefore(checkOut); }
+    }
+
+    static class User {
+        String username;
+        boolean isAdmin;
+        User(String u, boolean a) { username = u; isAdmin = a; }
+    }
+
+    // ---------- Occupancy index ----------
+    // Per-date bitset over room slots (one bit per booked night): one date's availability is a single
+    // lookup instead of a bookings scan per room. Next to it, each room keeps its stays in a sorted map
+    // keyed by check-in day; stays of one room never overlap, so "is this range free" is a floorEntry
+    // probe, O(log stays).
+    // Safe for concurrent use: readers never lock, and bits are set/cleared with CAS because different
+    // rooms share bitset words. Writers for the same room must be serialized by the caller (BookingEngine).
+    static class OccupancyIndex {
+        private static final int PAGE_BITS = 10;                      // 1024 room slots per bitset page
+        private static final int PAGE_WORDS = (1 << PAGE_BITS) / 64;
+
+        private final ConcurrentHashMap<Integer,Integer> slotByRoom = new ConcurrentHashMap<>();
+        private final Deque<Integer> freeSlots = new ArrayDeque<>();  // guarded by this
+        private int nextSlot = 0;                                      // guarded by this
+        // key: epochDay << 16 | page. Pages are fixed-size and never replaced, so CAS on them cannot be lost to a resize.
+        private final ConcurrentHashMap<Long,AtomicLongArray> pages = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer,ConcurrentSkipListMap<Long,Booking>> byRoom = new ConcurrentHashMap<>();
+
+        private int slotFor(int room) {
+            return slotByRoom.computeIfAbsent(room, r -> allocateSlot());
+        }
+
+        private synchronized int allocateSlot() { return freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop(); }
+
+        private synchronized void releaseSlot(int s) { freeSlots.push(s); }
+
+        private AtomicLongArray page(long day, int slot, boolean create) {
+            long key = (day << 16) | (slot >>> PAGE_BITS);
+            return create ? pages.computeIfAbsent(key, k -> new AtomicLongArray(PAGE_WORDS)) : pages.get(key);
+        }
+
+        // Atomically sets the night's bit; false if it was already set.
+        private boolean claim(long day, int slot) {
+            AtomicLongArray pg = page(day, slot, true);
+            int w = (slot & ((1 << PAGE_BITS) - 1)) >>> 6;
+            long mask = 1L << (slot & 63);
+            while (true) {
+                long old = pg.get(w);
+                if ((old & mask) != 0) return false;
+                if (pg.compareAndSet(w, old, old | mask)) return true;
+            }
+        }
+
+        private void release(long day, int slot) {
+            AtomicLongArray pg = page(day, slot, false);
+            if (pg == null) return;
+            int w = (slot & ((1 << PAGE_BITS) - 1)) >>> 6;
+            long mask = 1L << (slot & 63);
+            while (true) {
+                long old = pg.get(w);
+                if ((old & mask) == 0 || pg.compareAndSet(w, old, old & ~mask)) return;
+            }
+        }
+
+        void clear() {
+            synchronized (this) { freeSlots.clear(); nextSlot = 0; }
+            slotByRoom.clear(); pages.clear(); byRoom.clear();
+        }
+
+        // Claims every night of the stay; false (and nothing changed) if the range overlaps another stay.
+        boolean add(Booking b) {
+            if (!isFree(b.roomNumber, b.date, b.checkOut)) return false;
+            int slot = slotFor(b.roomNumber);
+            long first = b.date.toEpochDay(), end = b.checkOut.toEpochDay();
+            for (long d = first; d < end; d++) {
+                if (!claim(d, slot)) {
+                    for (long u = first; u < d; u++) release(u, slot);
+                    return false;
+                }
+            }
+            byRoom.computeIfAbsent(b.roomNumber, k -> new ConcurrentSkipListMap<>()).put(first, b);
+            return true;
+        }
+
+        // Removes the stay of this room that covers date d (any night of it).
+        Booking remove(int room, LocalDate d) {
+            Booking b = bookingAt(room, d);
+            if (b == null) return null;
+            byRoom.get(room).remove(b.date.toEpochDay(), b);
+            int slot = slotByRoom.get(room);
+            for (long n = b.date.toEpochDay(), end = b.checkOut.toEpochDay(); n < end; n++) release(n, slot);
+            return b;
+        }
+
+        // Drops all stays of the room and frees its slot; returns the removed stays.
+        Collection<Booking> removeRoom(int room) {
+            ConcurrentSkipListMap<Long,Booking> stays = byRoom.remove(room);
+            Integer s = slotByRoom.remove(room);
+            if (s == null) return Collections.emptyList();
+            if (stays == null) { releaseSlot(s); return Collections.emptyList(); }
+            for (Booking b : stays.values())
+                for (long n = b.date.toEpochDay(), end = b.checkOut.toEpochDay(); n < end; n++) release(n, s);
+            releaseSlot(s);
+            return stays.values();
+        }
+
+        // Point-in-time copy of one date's bitset; pair with isBooked(BitSet, int) when checking many rooms.
+        BitSet bookedOn(LocalDate d) {
+            long day = d.toEpochDay();
+            int maxPage;
+            synchronized (this) { maxPage = nextSlot >>> PAGE_BITS; }
+            long[] words = new long[(maxPage + 1) * PAGE_WORDS];
+            for (int pg = 0; pg <= maxPage; pg++) {
+                AtomicLongArray a = pages.get((day << 16) | pg);
+                if (a != null) for (int w = 0; w < PAGE_WORDS; w++) words[pg * PAGE_WORDS + w] = a.get(w);
+            }
+            return BitSet.valueOf(words);
+        }
+
+        // Booked-night bitmaps over [fromDay, fromDay + days): bit i of result[k] is set when rooms[k] is booked
+        // on night fromDay + i. Transposes the per-date pages, so the cost is one page lookup per date and page
+        // plus one bit probe per room and date, whatever the number of stays.
+        BitSet[] bookedNights(int[] rooms, long fromDay, int days) {
+            BitSet[] out = new BitSet[rooms.length];
+            int[] slots = new int[rooms.length];
+            for (int k = 0; k < rooms.length; k++) {
+                out[k] = new BitSet(days);
+                Integer s = slotByRoom.get(rooms[k]);
+                slots[k] = s == null ? -1 : s;
+            }
+            int maxPage;
+            synchronized (this) { maxPage = nextSlot >>> PAGE_BITS; }
+            AtomicLongArray[] pg = new AtomicLongArray[maxPage + 1];
+            for (int i = 0; i < days; i++) {
+                long day = fromDay + i;
+                boolean any = false;
+                for (int n = 0; n <= maxPage; n++) any |= (pg[n] = pages.get((day << 16) | n)) != null;
+                if (!any) continue;
+                for (int k = 0; k < rooms.length; k++) {
+                    int s = slots[k];
+                    if (s < 0) continue;
+                    AtomicLongArray a = pg[s >>> PAGE_BITS];
+                    if (a != null && (a.get((s & ((1 << PAGE_BITS) - 1)) >>> 6) & (1L << (s & 63))) != 0) out[k].set(i);
+                }
+            }
+            return out;
+        }
+
+        boolean isBooked(BitSet day, int room) {
+            Integer s = slotByRoom.get(room);
+            return s != null && day.get(s);
+        }
+
+        boolean isBooked(int room, LocalDate d) {
+            Integer s = slotByRoom.get(room);
+            if (s == null) return false;
+            AtomicLongArray pg = page(d.toEpochDay(), s, false);
+            return pg != null && (pg.get((s & ((1 << PAGE_BITS) - 1)) >>> 6) & (1L << (s & 63))) != 0;
+        }
+
+        // True when no stay of the room overlaps [from, to).
+        boolean isFree(int room, LocalDate from, LocalDate to) {
+            ConcurrentSkipListMap<Long,Booking> stays = byRoom.get(room);
+            if (stays == null) return true;
+            Map.Entry<Long,Booking> e = stays.floorEntry(to.toEpochDay() - 1);
+            return e == null || !e.getValue().checkOut.isAfter(from);
+        }
+
+        Booking bookingAt(int room, LocalDate d) {
+            ConcurrentSkipListMap<Long,Booking> stays = byRoom.get(room);
+            if (stays == null) return null;
+            Map.Entry<Long,Booking> e = stays.floorEntry(d.toEpochDay());
+            return e != null && e.getValue().covers(d) ? e.getValue() : null;
+        }
+
+        // Live read-only view of the room's stays keyed by check-in day.
+        // Rooms that have (or had) stays, including rooms deleted without purging their bookings.
+        Set<Integer> rooms() { return Collections.unmodifiableSet(byRoom.keySet()); }
+
+        NavigableMap<Long,Booking> stays(int room) {
+            ConcurrentSkipListMap<Long,Booking> stays = byRoom.get(room);
+            return stays == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(stays);
+        }
+
+        // Stays of the room overlapping [from, to), in check-in order.
+        List<Booking> overlapping(int room, LocalDate from, LocalDate to) {
+            ConcurrentSkipListMap<Long,Booking> stays = byRoom.get(room);
+            if (stays == null) return Collections.emptyList();
+            Long lo = stays.floorKey(from.toEpochDay());
+            List<Booking> out = new ArrayList<>();
+            for (Booking b : stays.subMap(lo != null ? lo : Long.MIN_VALUE, true, to.toEpochDay(), false).values())
+                if (b.checkOut.isAfter(from)) out.add(b);
+            return out;
+        }
+    }
+
+    // ---------- Room catalog ----------
+    // Rooms by number in an open-addressing int -> Room table, next to a by-number array kept sorted on
+    // insert and secondary indexes by type and by price. Every change publishes a new immutable snapshot
+    // (rooms are few and change rarely next to bookings), so lookups and listings never lock or sort.
+    // Writers must be serialized by the caller (the engine's structure lock).
+    static class RoomCatalog {
+        private static final Comparator<Room> BY_NUMBER = Comparator.comparingInt(r -> r.number);
+        private static final Comparator<Room> BY_PRICE = Comparator.comparingDouble((Room r) -> r.price).thenComparingInt(r -> r.number);
+
+        private static final class Snapshot {
+            final int[] keys; final Room[] slots;   // hash table; a null slot is empty
+            final Room[] byNumber, byPrice;
+            final Map<String,Room[]> byType;        // lower-cased type -> rooms by number
+
+            Snapshot(int[] keys, Room[] slots, Room[] byNumber, Room[] byPrice, Map<String,Room[]> byType) {
+                this.keys = keys; this.slots = slots; this.byNumber = byNumber; this.byPrice = byPrice; this.byType = byType;
+            }
+        }
+
+        private volatile Snapshot snap = build(new Room[0]);
+
+        private static int slot(int number, int mask) { int h = number * 0x9E3779B9; return (h ^ (h >>> 16)) & mask; }
+
+        private static String typeKey(String type) { return type.toLowerCase(Locale.ROOT); }
+
+        Room get(int number) {
+            Snapshot s = snap;
+            int mask = s.slots.length - 1;
+            for (int i = slot(number, mask); s.slots[i] != null; i = (i + 1) & mask)
+                if (s.keys[i] == number) return s.slots[i];
+            return null;
+        }
+
+        int size() { return snap.byNumber.length; }
+
+        // Read-only view in room-number order; no copy.
+        List<Room> sorted() { return Collections.unmodifiableList(Arrays.asList(snap.byNumber)); }
+
+        List<String> types() {
+            List<String> out = new ArrayList<>();
+            for (Room[] rs : snap.byType.values()) out.add(rs[0].type);
+            Collections.sort(out);
+            return out;
+        }
+
+        // Rooms of the type (any type when null, case-insensitive) priced within [min, max], by number.
+        List<Room> search(String type, double min, double max) {
+            Snapshot s = snap;
+            List<Room> out = new ArrayList<>();
+            if (type != null) {
+                for (Room r : s.byType.getOrDefault(typeKey(type), new Room[0])) if (r.price >= min && r.price <= max) out.add(r);
+                return out;
+            }
+            int lo = 0, hi = s.byPrice.length;
+            while (lo < hi) { int mid = (lo + hi) >>> 1; if (s.byPrice[mid].price < min) lo = mid + 1; else hi = mid; }
+            for (int i = lo; i < s.byPrice.length && s.byPrice[i].price <= max; i++) out.add(s.byPrice[i]);
+            out.sort(BY_NUMBER);
+            return out;
+        }
+
+        // Bulk load; a later room with the same number replaces an earlier one.
+        void replaceAll(Collection<Room> rs) {
+            Map<Integer,Room> unique = new LinkedHashMap<>();
+            for (Room r : rs) unique.put(r.number, r);
+            Room[] byNumber = unique.values().toArray(new Room[0]);
+            Arrays.sort(byNumber, BY_NUMBER);
+            snap = build(byNumber);
+        }
+
+        boolean add(Room r) {
+            if (get(r.number) != null) return false;
+            Snapshot s = snap;
+            Room[] byNumber = insert(s.byNumber, r, BY_NUMBER);
+            Map<String,Room[]> byType = new HashMap<>(s.byType);
+            byType.merge(typeKey(r.type), new Room[] {r}, (old, one) -> insert(old, r, BY_NUMBER));
+            int[] keys; Room[] slots;
+            if (byNumber.length * 2 > s.slots.length) { keys = new int[s.slots.length * 2]; slots = new Room[keys.length]; for (Room x : byNumber) put(keys, slots, x); }
+            else { keys = s.keys.clone(); slots = s.slots.clone(); put(keys, slots, r); }
+            snap = new Snapshot(keys, slots, byNumber, insert(s.byPrice, r, BY_PRICE), byType);
+            return true;
+        }
+
+        Room remove(int number) {
+            Room r = get(number);
+            if (r == null) return null;
+            Snapshot s = snap;
+            Room[] byNumber = delete(s.byNumber, r, BY_NUMBER);
+            Map<String,Room[]> byType = new HashMap<>(s.byType);
+            Room[] ofType = delete(byType.get(typeKey(r.type)), r, BY_NUMBER);
+            if (ofType.length == 0) byType.remove(typeKey(r.type)); else byType.put(typeKey(r.type), ofType);
+            // linear probing has no cheap delete; the table is rebuilt from the (still sorted) array
+            int[] keys = new int[s.slots.length]; Room[] slots = new Room[keys.length];
+            for (Room x : byNumber) put(keys, slots, x);
+            snap = new Snapshot(keys, slots, byNumber, delete(s.byPrice, r, BY_PRICE), byType);
+            return r;
+        }
+
+        private static Snapshot build(Room[] byNumber) {
+            int cap = Integer.highestOneBit(Math.max(8, byNumber.length * 2 - 1)) << 1;
+            int[] keys = new int[cap]; Room[] slots = new Room[cap];
+            Map<String,List<Room>> types = new HashMap<>();
+            for (Room r : byNumber) { put(keys, slots, r); types.computeIfAbsent(typeKey(r.type), k -> new ArrayList<>()).add(r); }
+            Map<String,Room[]> byType = new HashMap<>();
+            types.forEach((k, v) -> byType.put(k, v.toArray(new Room[0])));
+            Room[] byPrice = byNumber.clone();
+            Arrays.sort(byPrice, BY_PRICE);
+            return new Snapshot(keys, slots, byNumber, byPrice, byType);
+        }
+
+        private static void put(int[] keys, Room[] slots, Room r) {
+            int mask = slots.length - 1, i = slot(r.number, mask);
+            while (slots[i] != null && keys[i] != r.number) i = (i + 1) & mask;
+            keys[i] = r.number; slots[i] = r;
+        }
+
+        private static Room[] insert(Room[] a, Room r, Comparator<Room> order) {
+            int i = -Arrays.binarySearch(a, r, order) - 1;
+            Room[] out = new Room[a.length + 1];
+            System.arraycopy(a, 0, out, 0, i);
+            out[i] = r;
+            System.arraycopy(a, i, out, i + 1, a.length - i);
+            return out;
+        }
+
+        private static Room[] delete(Room[] a, Room r, Comparator<Room> order) {
+            int i = Arrays.binarySearch(a, r, order);
+            Room[] out = new Room[a.length - 1];
+            System.arraycopy(a, 0, out, 0, i);
+            System.arraycopy(a, i + 1, out, i, a.length - i - 1);
+            return out;
+        }
+    }
+
+    // ---------- Customer directory ----------
+    // One entry per distinct customer name: a compact int id, the canonical (interned) name string that
+    // every booking of that customer shares, and a posting list of the customer's bookings in check-in
+    // order. Type-ahead runs on sorted skip-list indexes over lower-cased names and name words, so a
+    // prefix lookup is O(log n + results) and never blocks writers. Entries stay after their last booking
+    // is cancelled so returning guests still autocomplete.
+    static class CustomerDirectory {
+        static final class Customer {
+            final int id;
+            final String name;
+            // key: BookingEngine.key(checkIn, room)
+            final ConcurrentSkipListMap<Long,Booking> stays = new ConcurrentSkipListMap<>();
+            Customer(int id, String name) { this.id = id; this.name = name; }
+        }
+
+        private final ConcurrentHashMap<String,Customer> byExactName = new ConcurrentHashMap<>();
+        private volatile Customer[] byId = new Customer[64];
+        private int size;
+        // lower-cased full name / later words of the name, then '\0' and the id to keep keys unique
+        private final ConcurrentSkipListMap<String,Customer> nameIndex = new ConcurrentSkipListMap<>();
+        private final ConcurrentSkipListMap<String,Customer> wordIndex = new ConcurrentSkipListMap<>();
+
+        Customer get(int id) { Customer[] a = byId; return id >= 0 && id < a.length ? a[id] : null; }
+
+        Customer find(String name) { return byExactName.get(name.trim()); }
+
+        int size() { return byExactName.size(); }
+
+        // The customer for this name, created on first sight.
+        Customer register(String name) {
+            String n = name.trim();
+            Customer c = byExactName.get(n);
+            return c != null ? c : create(n);
+        }
+
+        private synchronized Customer create(String n) {
+            Customer c = byExactName.get(n);
+            if (c != null) return c;
+            c = new Customer(size, n);
+            Customer[] a = byId;
+            if (size == a.length) a = Arrays.copyOf(a, a.length * 2);
+            a[size++] = c;
+            byId = a;
+            String lower = n.toLowerCase();
+            nameIndex.put(lower + '\0' + c.id, c);
+            String[] words = lower.split("\\s+");
+            for (int i = 1; i < words.length; i++) if (!words[i].isEmpty()) wordIndex.put(words[i] + '\0' + c.id, c);
+            byExactName.put(n, c);
+            return c;
+        }
+
+        // Canonicalizes the booking's name and id and adds it to the customer's posting list.
+        void link(Booking b, long key) {
+            Customer c = register(b.customer);
+            b.customer = c.name;
+            b.customerId = c.id;
+            c.stays.put(key, b);
+        }
+
+        void unlink(Booking b, long key) {
+            Customer c = get(b.customerId);
+            if (c != null) c.stays.remove(key, b);
+        }
+
+        void clearStays() { for (Customer c : byExactName.values()) c.stays.clear(); }
+
+        // Up to 'limit' customers whose name, or any later word of it, starts with the prefix (case-insensitive).
+        List<Customer> suggest(String prefix, int limit) {
+            String p = prefix.trim().toLowerCase();
+            LinkedHashSet<Customer> out = new LinkedHashSet<>();
+            if (p.isEmpty()) return new ArrayList<>();
+            for (Customer c : nameIndex.subMap(p, p + Character.MAX_VALUE).values()) { if (out.size() >= limit) break; out.add(c); }
+            for (Customer c : wordIndex.subMap(p, p + Character.MAX_VALUE).values()) { if (out.size() >= limit) break; out.add(c); }
+            return new ArrayList<>(out);
+        }
+
+        // All customers in case-insensitive name order (live, lock-free).
+        Collection<Customer> byName() { return nameIndex.values(); }
+    }
+
+    // ---------- Booking engine ----------
+    // Owns rooms and bookings. Reads (rooms(), bookings(), the occupancy queries) are lock-free and see
+    // weakly consistent live views. Reservations and cancellations are serialized per room through
+    // striped locks, so two concurrent reservations overlapping on the same room can never both succeed;
+    // room add/remove takes the structure write lock so no reservation is in flight meanwhile.
+    // Listeners run while the room's lock is held, which keeps their per-room order (e.g. the journal) exact.
+    static class BookingEngine {
+        interface Listener {
+            default void booked(Booking b) {}
+            // A group reserved in one reserveAll() call; override to handle it as one unit (e.g. one journal write).
+            default void bookedAll(List<Booking> bs) { for (Booking b : bs) booked(b); }
+            default void cancelled(Booking b) {}
+            default void roomAdded(Room r) {}
+            default void roomRemoved(int room, boolean purgedBookings) {}
+            // Bookings or rooms changed without per-booking events (load, restore, journal replay).
+            // Fired often during bulk loads: just mark derived state stale.
+            default void reloaded() {}
+        }
+
+        private static final int STRIPES = 64;
+
+        private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+        private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+        private final RoomCatalog rooms = new RoomCatalog();
+        // key: checkIn epochDay << 32 | room; a room never has two stays starting on the same night
+        private final ConcurrentSkipListMap<Long,Booking> byCheckIn = new ConcurrentSkipListMap<>();
+        private final AtomicInteger bookingCount = new AtomicInteger();
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        private volatile RangeLoader loader = (from, to) -> {};
+        private volatile Committer committer = bs -> null;
+        final OccupancyIndex occupancy = new OccupancyIndex();
+        final CustomerDirectory customers = new CustomerDirectory();
+
+        BookingEngine() { for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock(); }
+
+        private static int stripeOf(int room) { return Math.floorMod(room * 0x9E3779B9, STRIPES); }
+        private ReentrantLock stripe(int room) { return stripes[stripeOf(room)]; }
+
+        private static long key(Booking b) { return key(b.date, b.roomNumber); }
+        static long key(LocalDate checkIn, int room) { return (checkIn.toEpochDay() << 32) | (room & 0xffffffffL); }
+
+        void addListener(Listener l) { listeners.add(l); }
+
+        // Storage that keeps part of the history on disk (MonthlyPartitions) loads the stays touching
+        // [from, to) before they are read or changed. Called without any engine lock held.
+        interface RangeLoader { void ensureLoaded(LocalDate from, LocalDate to); }
+
+        void setLoader(RangeLoader l) { loader = l; }
+        void ensureLoaded(LocalDate from, LocalDate to) { loader.ensureLoaded(from, to); }
+
+        // Storage that has to accept new stays before they are applied (DatabaseStorage): returns null, or why it
+        // refused, in which case nothing is applied. Called with the rooms' locks held, after the in-memory checks.
+        interface Committer { String commit(List<Booking> bs); }
+
+        void setCommitter(Committer c) { committer = c; }
+
+        // ----- reads -----
+        List<Room> rooms() { return rooms.sorted(); }
+        Room room(int number) { return rooms.get(number); }
+        boolean hasRooms() { return rooms.size() > 0; }
+        List<Room> searchRooms(String type, double minPrice, double maxPrice) { return rooms.search(type, minPrice, maxPrice); }
+        List<String> roomTypes() { return rooms.types(); }
+        List<String> suggestCustomers(String prefix, int limit) {
+            List<String> out = new ArrayList<>();
+            for (CustomerDirectory.Customer c : customers.suggest(prefix, limit)) out.add(c.name);
+            return out;
+        }
+        // The customer's bookings in check-in order, from their posting list; empty for an unknown name.
+        Collection<Booking> customerHistory(String name) {
+            CustomerDirectory.Customer c = customers.find(name);
+            return c == null ? Collections.emptyList() : Collections.unmodifiableCollection(c.stays.values());
+        }
+        // Live view in check-in, room order; iteration never blocks writers.
+        Collection<Booking> bookings() { return Collections.unmodifiableCollection(byCheckIn.values()); }
+        // Sorted live views for paging without copying: all bookings by key(checkIn, room), one room's by check-in day.
+        NavigableMap<Long,Booking> bookingsByKey() { return Collections.unmodifiableNavigableMap(byCheckIn); }
+        NavigableMap<Long,Booking> roomStays(int room) { return occupancy.stays(room); }
+        Set<Integer> bookedRooms() { return occupancy.rooms(); }
+        int bookingCount() { return bookingCount.get(); }
+        boolean isFree(int room, LocalDate from, LocalDate to) { return occupancy.isFree(room, from, to); }
+        Booking bookingAt(int room, LocalDate d) { return occupancy.bookingAt(room, d); }
+        List<Booking> overlapping(int room, LocalDate from, LocalDate to) { return occupancy.overlapping(room, from, to); }
+        BitSet bookedOn(LocalDate d) { return occupancy.bookedOn(d); }
+        boolean isBooked(BitSet day, int room) { return occupancy.isBooked(day, room); }
+        BitSet[] bookedNights(int[] rooms, LocalDate from, int days) { return occupancy.bookedNights(rooms, from.toEpochDay(), days); }
+
+        // ----- writes -----
+        // Replace all rooms / all bookings (startup load, reload); listeners only get reloaded().
+        void replaceBookings(Collection<Booking> bs) {
+            structure.writeLock().lock();
+            try {
+                byCheckIn.clear(); occupancy.clear(); customers.clearStays(); bookingCount.set(0);
+                for (Booking b : bs) restoreLocked(b);
+            } finally { structure.writeLock().unlock(); }
+            fireReloaded();
+        }
+
+        void replaceRooms(Collection<Room> rs) {
+            structure.writeLock().lock();
+            try { rooms.replaceAll(rs); }
+            finally { structure.writeLock().unlock(); }
+            fireReloaded();
+        }
+
+        private void fireReloaded() { for (Listener li : listeners) li.reloaded(); }
+
+        // Runs r with no reservation, cancellation or room change in flight (and so no listener call).
+        void exclusive(Runnable r) {
+            structure.writeLock().lock();
+            try { r.run(); }
+            finally { structure.writeLock().unlock(); }
+        }
+
+        // Applies a persisted or imported stay without notifying listeners; false when it overlaps an existing stay.
+        // The room need not exist (bookings may outlive a deleted room).
+        boolean restore(Booking b) {
+            try { return restoreQuietly(b); }
+            finally { fireReloaded(); }
+        }
+
+        // restore() for a batch (an import, a thawed month): each stay goes through the predicate, which says
+        // whether it was applied, and listeners get a single reloaded() at the end.
+        void restoreAll(Consumer<Predicate<Booking>> batch) {
+            try { batch.accept(this::restoreQuietly); }
+            finally { fireReloaded(); }
+        }
+
+        void restoreAll(Collection<Booking> bs) { restoreAll(restore -> { for (Booking b : bs) restore.test(b); }); }
+
+        private boolean restoreQuietly(Booking b) {
+            structure.readLock().lock();
+            ReentrantLock l = stripe(b.roomNumber);
+            l.lock();
+            try { return restoreLocked(b); }
+            finally { l.unlock(); structure.readLock().unlock(); }
+        }
+
+        private boolean restoreLocked(Booking b) {
+            if (!occupancy.add(b)) return false;
+            customers.link(b, key(b));
+            byCheckIn.put(key(b), b);
+            bookingCount.incrementAndGet();
+            return true;
+        }
+
+        // Another instance's stays and cancels applied by live sync are timed as a whole under SYNC_APPLY,
+        // so BOOK and CANCEL only count this terminal's own requests.
+        private static void timed(Metrics.Op op, long t0) { if (!LiveSync.applyingRemote()) Metrics.stop(op, t0); }
+        private static void rejected(Metrics.Op op) { if (!LiveSync.applyingRemote()) op.rejected.incrementAndGet(); }
+
+        // Reserves the stay; returns null on success or the reason it was refused.
+        String reserve(Booking b) {
+            if (!b.checkOut.isAfter(b.date)) return "check-out must be after check-in";
+            long t0 = Metrics.start();
+            loader.ensureLoaded(b.date, b.checkOut);
+            structure.readLock().lock();
+            ReentrantLock l = stripe(b.roomNumber);
+            l.lock();
+            try {
+                if (rooms.get(b.roomNumber) == null) return "unknown room";
+                String refused = occupancy.isFree(b.roomNumber, b.date, b.checkOut) ? committer.commit(Collections.singletonList(b))
+                        : "room already booked for these dates";
+                if (refused != null) { rejected(Metrics.Op.BOOK); return refused; }
+                restoreLocked(b); // cannot fail: checked under the same lock
+                for (Listener li : listeners) li.booked(b);
+                return null;
+            } finally { l.unlock(); structure.readLock().unlock(); timed(Metrics.Op.BOOK, t0); }
+        }
+
+        // Reserves every stay or none. The requests are checked against the occupancy index and against each
+        // other while the locks of every room involved are held (taken in stripe order, so concurrent groups
+        // cannot deadlock), and applied only when all of them pass. Listeners get a single bookedAll().
+        // Returns null on success, otherwise one entry per request: why it was refused, or null if it was fine.
+        String[] reserveAll(List<Booking> bs) {
+            if (bs.isEmpty()) return null;
+            long t0 = Metrics.start();
+            String[] why = new String[bs.size()];
+            boolean refused = false;
+            LocalDate from = LocalDate.MAX, to = LocalDate.MIN;
+            BitSet stripeSet = new BitSet(STRIPES);
+            for (int i = 0; i < bs.size(); i++) {
+                Booking b = bs.get(i);
+                if (!b.checkOut.isAfter(b.date)) { why[i] = "check-out must be after check-in"; refused = true; continue; }
+                if (b.date.isBefore(from)) from = b.date;
+                if (b.checkOut.isAfter(to)) to = b.checkOut;
+                stripeSet.set(stripeOf(b.roomNumber));
+            }
+            if (refused) { rejected(Metrics.Op.GROUP_BOOK); timed(Metrics.Op.GROUP_BOOK, t0); return why; }
+            loader.ensureLoaded(from, to);
+            structure.readLock().lock();
+            for (int st = stripeSet.nextSetBit(0); st >= 0; st = stripeSet.nextSetBit(st + 1)) stripes[st].lock();
+            try {
+                // requests for the same room, in check-in order, must not overlap each other either
+                Integer[] order = new Integer[bs.size()];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+                Arrays.sort(order, Comparator.comparingInt((Integer i) -> bs.get(i).roomNumber).thenComparing(i -> bs.get(i).date));
+                for (int k = 0; k < order.length; k++) {
+                    int i = order[k];
+                    Booking b = bs.get(i);
+                    if (rooms.get(b.roomNumber) == null) why[i] = "unknown room";
+                    else if (!occupancy.isFree(b.roomNumber, b.date, b.checkOut)) why[i] = "room already booked for these dates";
+                    else if (k > 0 && bs.get(order[k - 1]).roomNumber == b.roomNumber && b.date.isBefore(bs.get(order[k - 1]).checkOut))
+                        why[i] = "overlaps another stay in this group";
+                    refused |= why[i] != null;
+                }
+                List<Booking> group = Collections.unmodifiableList(new ArrayList<>(bs));
+                String notStored = refused ? null : committer.commit(group);
+                if (notStored != null) { Arrays.fill(why, notStored); refused = true; }
+                if (refused) { rejected(Metrics.Op.GROUP_BOOK); return why; }
+                for (Booking b : bs) restoreLocked(b); // cannot fail: every stay was checked under the same locks
+                for (Listener li : listeners) li.bookedAll(group);
+                return null;
+            } finally {
+                for (int st = stripeSet.nextSetBit(0); st >= 0; st = stripeSet.nextSetBit(st + 1)) stripes[st].unlock();
+                structure.readLock().unlock();
+                timed(Metrics.Op.GROUP_BOOK, t0);
+            }
+        }
+
+        // Cancels the stay of the room covering the given night; null if there is none.
+        Booking cancel(int room, LocalDate night) {
+            long t0 = Metrics.start();
+            loader.ensureLoaded(night, night.plusDays(1));
+            structure.readLock().lock();
+            ReentrantLock l = stripe(room);
+            l.lock();
+            try {
+                Booking b = occupancy.remove(room, night);
+                if (b == null) { rejected(Metrics.Op.CANCEL); return null; }
+                byCheckIn.remove(key(b), b);
+                customers.unlink(b, key(b));
+                bookingCount.decrementAndGet();
+                for (Listener li : listeners) li.cancelled(b);
+                return b;
+            } finally { l.unlock(); structure.readLock().unlock(); timed(Metrics.Op.CANCEL, t0); }
+        }
+
+        boolean addRoom(Room r) {
+            structure.writeLock().lock();
+            try {
+                if (!rooms.add(r)) return false;
+                for (Listener li : listeners) li.roomAdded(r);
+                return true;
+            } finally { structure.writeLock().unlock(); }
+        }
+
+        void removeRoom(int number, boolean purgeBookings) {
+            if (purgeBookings) loader.ensureLoaded(LocalDate.MIN, LocalDate.MAX);
+            structure.writeLock().lock();
+            try {
+                rooms.remove(number);
+                if (purgeBookings) purgeLocked(number);
+                for (Listener li : listeners) li.roomRemoved(number, purgeBookings);
+            } finally { structure.writeLock().unlock(); }
+        }
+
+        // Journal replay of a room purge; listeners are not notified.
+        void purgeRoomBookings(int number) {
+            structure.writeLock().lock();
+            try { purgeLocked(number); }
+            finally { structure.writeLock().unlock(); }
+            fireReloaded();
+        }
+
+        private void purgeLocked(int number) {
+            for (Booking b : occupancy.removeRoom(number)) {
+                byCheckIn.remove(key(b), b);
+                customers.unlink(b, key(b));
+                bookingCount.decrementAndGet();
+            }
+        }
+    }
+
+    // ---------- Analytics ----------
+    // Occupancy %, ADR and RevPAR from rollups kept next to the engine. Per room type there is a
+    // primitive array of sold room-nights and one of revenue (cents), indexed by epoch day, plus a
+    // Fenwick tree over each, so any date range is answered in O(types * log days) without touching
+    // bookings. Bookings and cancellations update the arrays incrementally; room changes and bulk loads
+    // mark them stale and the next query rebuilds them in one pass under the engine's exclusive lock.
+    // Revenue is each stay's quoted total spread over its nights (nights * the room's price for stays
+    // booked before rate plans); available nights use today's room inventory.
+    static class Analytics implements BookingEngine.Listener {
+        enum Granularity { DAY, WEEK, MONTH }
+
+        static class Stats {
+            final long roomNights, available, revenueCents;
+            Stats(long roomNights, long available, long revenueCents) { this.roomNights = roomNights; this.available = available; this.revenueCents = revenueCents; }
+            double occupancy() { return available == 0 ? 0 : 100.0 * roomNights / available; }
+            double adr() { return roomNights == 0 ? 0 : revenueCents / 100.0 / roomNights; }
+            double revpar() { return available == 0 ? 0 : revenueCents / 100.0 / available; }
+            Stats plus(Stats o) { return new Stats(roomNights + o.roomNights, available + o.available, revenueCents + o.revenueCents); }
+        }
+
+        private static final int SLACK_DAYS = 366;
+
+        private final BookingEngine eng;
+        private volatile boolean stale = true;
+        private final Map<String,Integer> typeIndex = new HashMap<>(); // by typeKey
+        private final List<String> types = new ArrayList<>();
+        private int[] roomsOfType = new int[0];
+        private long base;                       // epoch day of index 0
+        private long[][] nights = new long[0][], revenue = new long[0][];          // [type][day]
+        private long[][] nightsTree = new long[0][], revenueTree = new long[0][];  // Fenwick, [type][day + 1]
+
+        Analytics(BookingEngine eng) { this.eng = eng; eng.addListener(this); }
+
+        @Override public void booked(Booking b) { apply(b, 1); }
+        @Override public void cancelled(Booking b) { apply(b, -1); }
+        @Override public void roomAdded(Room r) { stale = true; }
+        @Override public void roomRemoved(int room, boolean purged) { stale = true; }
+        @Override public void reloaded() { stale = true; }
+
+        private synchronized void apply(Booking b, int sign) {
+            if (stale) return; // the rebuild will see it
+            Room r = eng.room(b.roomNumber);
+            if (r == null) return;
+            Integer t = typeIndex.get(typeKey(r.type));
+            if (t == null) { stale = true; return; }
+            ensureRange(b.date.toEpochDay(), b.checkOut.toEpochDay());
+            for (int k = 0; k < b.nights(); k++) {
+                int i = (int) (b.date.toEpochDay() + k - base);
+                long cents = nightCents(b, r, k);
+                nights[t][i] += sign; revenue[t][i] += sign * cents;
+                fenwickAdd(nightsTree[t], i, sign); fenwickAdd(revenueTree[t], i, sign * cents);
+            }
+        }
+
+        // Night k's share of the stay's total in cents; odd cents go to the first nights.
+        private static long nightCents(Booking b, Room r, int k) {
+            long total = Math.round(b.total(r) * 100);
+            int n = b.nights();
+            return total / n + (k < total % n ? 1 : 0);
+        }
+
+        // Grows the day range (with slack) by copying the daily arrays; the trees are rebuilt from them in O(days).
+        private void ensureRange(long from, long to) {
+            int len = nights.length == 0 ? 0 : nights[0].length;
+            if (len > 0 && from >= base && to <= base + len) return;
+            long lo = len == 0 ? from - SLACK_DAYS : Math.min(base, from - SLACK_DAYS);
+            long hi = len == 0 ? to + SLACK_DAYS : Math.max(base + len, to + SLACK_DAYS);
+            int n = (int) (hi - lo), shift = (int) (base - lo);
+            for (int t = 0; t < types.size(); t++) {
+                long[] nn = new long[n], rr = new long[n];
+                if (len > 0) { System.arraycopy(nights[t], 0, nn, shift, len); System.arraycopy(revenue[t], 0, rr, shift, len); }
+                nights[t] = nn; revenue[t] = rr;
+                nightsTree[t] = fenwickOf(nn); revenueTree[t] = fenwickOf(rr);
+            }
+            base = lo;
+        }
+
+        private void rebuild() {
+            eng.exclusive(() -> {
+                synchronized (this) {
+                    if (!stale) return;
+                    typeIndex.clear(); types.clear();
+                    List<Room> rooms = eng.rooms();
+                    for (Room r : rooms) if (typeIndex.putIfAbsent(typeKey(r.type), types.size()) == null) types.add(r.type);
+                    roomsOfType = new int[types.size()];
+                    for (Room r : rooms) roomsOfType[typeIndex.get(typeKey(r.type))]++;
+                    long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+                    for (Booking b : eng.bookings()) { lo = Math.min(lo, b.date.toEpochDay()); hi = Math.max(hi, b.checkOut.toEpochDay()); }
+                    if (lo > hi) { lo = hi = LocalDate.now().toEpochDay(); }
+                    int n = (int) (hi - lo) + 2 * SLACK_DAYS;
+                    base = lo - SLACK_DAYS;
+                    nights = new long[types.size()][n]; revenue = new long[types.size()][n];
+                    for (Booking b : eng.bookings()) {
+                        Room r = eng.room(b.roomNumber);
+                        if (r == null) continue;
+                        int t = typeIndex.get(typeKey(r.type));
+                        for (int k = 0; k < b.nights(); k++) {
+                            int i = (int) (b.date.toEpochDay() + k - base);
+                            nights[t][i]++; revenue[t][i] += nightCents(b, r, k);
+                        }
+                    }
+                    nightsTree = new long[types.size()][]; revenueTree = new long[types.size()][];
+                    for (int t = 0; t < types.size(); t++) { nightsTree[t] = fenwickOf(nights[t]); revenueTree[t] = fenwickOf(revenue[t]); }
+                    stale = false;
+                }
+            });
+        }
+
+        private static void fenwickAdd(long[] tree, int i, long v) { for (i++; i < tree.length; i += i & -i) tree[i] += v; }
+
+        // Sum of the first i days.
+        private static long fenwickSum(long[] tree, int i) { long s = 0; for (; i > 0; i -= i & -i) s += tree[i]; return s; }
+
+        private static long[] fenwickOf(long[] daily) {
+            long[] tree = new long[daily.length + 1];
+            System.arraycopy(daily, 0, tree, 1, daily.length);
+            for (int i = 1; i < tree.length; i++) { int j = i + (i & -i); if (j < tree.length) tree[j] += tree[i]; }
+            return tree;
+        }
+
+        List<String> roomTypes() { if (stale) rebuild(); synchronized (this) { return new ArrayList<>(types); } }
+
+        // Room types are matched case-insensitively: "Std" and "std" are one type.
+        private static String typeKey(String type) { return type.toLowerCase(Locale.ROOT); }
+
+        // [from, to) for one room type (in any case), or every type when type is null.
+        Stats range(String type, LocalDate from, LocalDate to) {
+            if (stale) rebuild();
+            synchronized (this) {
+                long days = Math.max(0, to.toEpochDay() - from.toEpochDay());
+                int len = nights.length == 0 ? 0 : nights[0].length;
+                int lo = (int) Math.max(0, Math.min(len, from.toEpochDay() - base));
+                int hi = (int) Math.max(0, Math.min(len, to.toEpochDay() - base));
+                long sold = 0, cents = 0, avail = 0;
+                Integer only = type == null ? null : typeIndex.get(typeKey(type));
+                if (type != null && only == null) return new Stats(0, 0, 0);
+                for (int t = 0; t < types.size(); t++) {
+                    if (only != null && t != only) continue;
+                    sold += fenwickSum(nightsTree[t], hi) - fenwickSum(nightsTree[t], lo);
+                    cents += fenwickSum(revenueTree[t], hi) - fenwickSum(revenueTree[t], lo);
+                    avail += roomsOfType[t] * days;
+                }
+                return new Stats(sold, avail, cents);
+            }
+        }
+
+        // Per-room figures come from the room's own stay index (only stays overlapping the range are visited).
+        Stats room(Room r, LocalDate from, LocalDate to) {
+            long sold = 0, cents = 0;
+            for (Booking b : eng.overlapping(r.number, from, to)) {
+                long lo = Math.max(b.date.toEpochDay(), from.toEpochDay()), hi = Math.min(b.checkOut.toEpochDay(), to.toEpochDay());
+                sold += hi - lo;
+                for (long d = lo; d < hi; d++) cents += nightCents(b, r, (int) (d - b.date.toEpochDay()));
+            }
+            return new Stats(sold, Math.max(0, to.toEpochDay() - from.toEpochDay()), cents);
+        }
+
+        static LocalDate periodEnd(LocalDate start, Granularity g) {
+            switch (g) {
+                case DAY: return start.plusDays(1);
+                case WEEK: return start.plusDays(8 - start.getDayOfWeek().getValue()); // next Monday
+                default: return start.withDayOfMonth(1).plusMonths(1);
+            }
+        }
+
+        // One row per cell: label followed by the formatted figures, in the order of COLUMNS.
+        static final String[] COLUMNS = {"Period / group", "Room nights", "Available", "Occupancy %", "ADR", "RevPAR", "Revenue"};
+
+        static String[] cells(String label, Stats s) {
+            return new String[] { label, Long.toString(s.roomNights), Long.toString(s.available),
+                    String.format(Locale.ROOT, "%.1f", s.occupancy()), PdfReport.money(s.adr()), PdfReport.money(s.revpar()), PdfReport.money(s.revenueCents / 100.0) };
+        }
+
+        enum Breakdown { PERIOD, ROOM_TYPE, ROOM }
+
+        // Dashboard/report rows for [from, to) followed by a total row.
+        List<String[]> report(LocalDate from, LocalDate to, Granularity g, Breakdown by) {
+            List<String[]> rows = new ArrayList<>();
+            Stats total = range(null, from, to);
+            switch (by) {
+                case PERIOD:
+                    for (LocalDate d = from; d.isBefore(to); ) {
+                        LocalDate end = periodEnd(d, g);
+                        if (end.isAfter(to)) end = to;
+                        rows.add(cells(d.format(DATE_FMT) + (g == Granularity.DAY ? "" : " .. " + end.minusDays(1).format(DATE_FMT)), range(null, d, end)));
+                        d = end;
+                    }
+                    break;
+                case ROOM_TYPE:
+                    for (String t : roomTypes()) rows.add(cells(t, range(t, from, to)));
+                    break;
+                default:
+                    for (Room r : eng.rooms()) rows.add(cells("Room " + r.number + " (" + r.type + ")", room(r, from, to)));
+            }
+            rows.add(cells("Total", total));
+            return rows;
+        }
+    }
+
+    // ---------- Pricing ----------
+    // Rate plans, read from rates.csv: one rule per line, '#' starts a comment, type '*' matches every room type.
+    //   base,<type>,<rate>                  nightly base rate for the type (rooms of other types keep their own price)
+    //   season,<type>,<from>,<to>,<adj>     nights from..to, inclusive
+    //   weekday,<type>,<days>,<adj>         nights falling on those days, e.g. "FRI SAT"
+    //   occupancy,<type>,<percent>,<adj>    nights where at least that share of the type is booked (highest threshold wins)
+    //   stay,<type>,<nights>,<adj>          whole stays of at least that many nights (longest wins)
+    // <adj> is a percentage ("+20%", "-10%") or an amount per night ("+500"). A night costs
+    // base * (product of its percentages) + (sum of its amounts); occupancy and stay rules are applied on top.
+    //
+    // Season and weekday rules only depend on the date, so they are resolved once per room type into a
+    // table of per-night multipliers and offsets covering the year behind and two years ahead; quoting a
+    // night is then an array read however many rules there are. The tables are dropped whenever the plans
+    // change, and rebuilt lazily.
+    static class Pricing {
+        enum Kind { BASE, SEASON, WEEKDAY, OCCUPANCY, STAY }
+
+        static class Rule {
+            final Kind kind;
+            final String type;               // "*" for every type
+            final LocalDate from, to;        // SEASON
+            final Set<DayOfWeek> days;       // WEEKDAY
+            final int threshold;             // OCCUPANCY percent, STAY nights
+            final double value;              // BASE rate, otherwise the adjustment
+            final boolean percent;
+
+            Rule(Kind kind, String type, LocalDate from, LocalDate to, Set<DayOfWeek> days, int threshold, double value, boolean percent) {
+                this.kind = kind; this.type = type; this.from = from; this.to = to; this.days = days;
+                this.threshold = threshold; this.value = value; this.percent = percent;
+            }
+
+            boolean matches(String roomType) { return type.equals("*") || type.equalsIgnoreCase(roomType); }
+
+            double adjust(double rate, int nights) { return percent ? rate * (1 + value / 100) : rate + value * nights; }
+        }
+
+        // Season and weekday rules resolved for one room type: rate(night) = base * mult[i] + add[i].
+        private static class Table {
+            final long start;
+            final double base;               // NaN: each room's own price
+            final double[] mult, add;
+            final Rule[] occupancy, stay;    // highest threshold first
+
+            Table(long start, int days, double base, Rule[] occupancy, Rule[] stay) {
+                this.start = start; this.base = base; this.occupancy = occupancy; this.stay = stay;
+                mult = new double[days]; add = new double[days];
+            }
+        }
+
+        private static final int DAYS_BACK = 366, DAYS_AHEAD = 2 * 366;
+
+        static final String TEMPLATE = String.join("\n",
+                "# kind,type,...,adjustment   (type * = every room type; adjustment +20% / -10% / +500 per night)",
+                "# base,Deluxe,3200",
+                "# season,*,2026-12-20,2027-01-05,+30%",
+                "# weekday,*,FRI SAT,+15%",
+                "# occupancy,*,80,+10%",
+                "# stay,*,7,-10%",
+                "");
+
+        private final Analytics analytics;
+        private volatile List<Rule> rules = Collections.emptyList();
+        private volatile ConcurrentHashMap<String,Table> tables = new ConcurrentHashMap<>();
+
+        Pricing(Analytics analytics) { this.analytics = analytics; }
+
+        List<Rule> rules() { return rules; }
+
+        // Rules are published before the empty table map, so a table built from the old rules can only
+        // land in the old map.
+        void setRules(List<Rule> rs) {
+            rules = Collections.unmodifiableList(new ArrayList<>(rs));
+            tables = new ConcurrentHashMap<>();
+        }
+
+        // Throws IllegalArgumentException naming the first bad line.
+        static List<Rule> parse(List<String> lines) {
+            List<Rule> out = new ArrayList<>();
+            for (int n = 0; n < lines.size(); n++) {
+                String ln = lines.get(n);
+                int hash = ln.indexOf('#');
+                if (hash >= 0) ln = ln.substring(0, hash);
+                if (ln.trim().isEmpty()) continue;
+                String[] p = ln.split(",", -1);
+                for (int i = 0; i < p.length; i++) p[i] = p[i].trim();
+                try {
+                    out.add(parseRule(p));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("line " + (n + 1) + ": " + e.getMessage() + ": " + lines.get(n).trim());
+                }
+            }
+            return out;
+        }
+
+        private static Rule parseRule(String[] p) {
+            Kind kind;
+            try { kind = Kind.valueOf(p[0].toUpperCase(Locale.ROOT)); }
+            catch (IllegalArgumentException e) { throw new IllegalArgumentException("unknown rule '" + p[0] + "'"); }
+            int want = kind == Kind.BASE ? 3 : kind == Kind.SEASON ? 5 : 4;
+            if (p.length != want) throw new IllegalArgumentException("expected " + want + " fields");
+            if (p[1].isEmpty()) throw new IllegalArgumentException("room type required");
+            if (kind == Kind.BASE) return new Rule(kind, p[1], null, null, null, 0, Double.parseDouble(p[2]), false);
+            String adj = p[p.length - 1];
+            boolean percent = adj.endsWith("%");
+            double value = Double.parseDouble(percent ? adj.substring(0, adj.length() - 1) : adj);
+            switch (kind) {
+                case SEASON: {
+                    LocalDate from = LocalDate.parse(p[2], DATE_FMT), to = LocalDate.parse(p[3], DATE_FMT);
+                    if (to.isBefore(from)) throw new IllegalArgumentException("season ends before it starts");
+                    return new Rule(kind, p[1], from, to, null, 0, value, percent);
+                }
+                case WEEKDAY: {
+                    Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+                    for (String d : p[2].trim().split("\\s+")) days.add(dayOfWeek(d));
+                    return new Rule(kind, p[1], null, null, days, 0, value, percent);
+                }
+                default:
+                    return new Rule(kind, p[1], null, null, null, Integer.parseInt(p[2]), value, percent);
+            }
+        }
+
+        private static DayOfWeek dayOfWeek(String s) {
+            String u = s.toUpperCase(Locale.ROOT);
+            for (DayOfWeek d : DayOfWeek.values()) if (u.length() >= 3 && d.name().startsWith(u)) return d;
+            throw new IllegalArgumentException("unknown day '" + s + "'");
+        }
+
+        private Table table(String type) {
+            ConcurrentHashMap<String,Table> m = tables;
+            Table t = m.get(type);
+            return t != null ? t : m.computeIfAbsent(type, this::build);
+        }
+
+        private Table build(String type) {
+            List<Rule> rs = rules;
+            double base = Double.NaN;
+            List<Rule> occ = new ArrayList<>(), stay = new ArrayList<>(), dated = new ArrayList<>();
+            for (Rule r : rs) {
+                if (!r.matches(type)) continue;
+                switch (r.kind) {
+                    case BASE: base = r.value; break;
+                    case OCCUPANCY: occ.add(r); break;
+                    case STAY: stay.add(r); break;
+                    default: dated.add(r);
+                }
+            }
+            Comparator<Rule> highestFirst = Comparator.comparingInt((Rule r) -> r.threshold).reversed();
+            occ.sort(highestFirst); stay.sort(highestFirst);
+            Table t = new Table(LocalDate.now().toEpochDay() - DAYS_BACK, DAYS_BACK + DAYS_AHEAD, base,
+                    occ.toArray(new Rule[0]), stay.toArray(new Rule[0]));
+            Arrays.fill(t.mult, 1);
+            for (Rule r : dated) {
+                if (r.kind == Kind.SEASON) {
+                    int lo = (int) Math.max(0, r.from.toEpochDay() - t.start);
+                    int hi = (int) Math.min(t.mult.length - 1, r.to.toEpochDay() - t.start);
+                    for (int i = lo; i <= hi; i++) apply(r, t, i);
+                } else {
+                    for (int i = 0; i < t.mult.length; i++) if (r.days.contains(LocalDate.ofEpochDay(t.start + i).getDayOfWeek())) apply(r, t, i);
+                }
+            }
+            return t;
+        }
+
+        private static void apply(Rule r, Table t, int i) {
+            if (r.percent) t.mult[i] *= 1 + r.value / 100; else t.add[i] += r.value;
+        }
+
+        // Nightly rate from the dated rules; outside the table's window the rules are resolved directly.
+        private double nightRate(Table t, double base, String type, long day) {
+            int i = (int) (day - t.start);
+            if (i >= 0 && i < t.mult.length) return base * t.mult[i] + t.add[i];
+            double mult = 1, add = 0;
+            LocalDate d = LocalDate.ofEpochDay(day);
+            for (Rule r : rules) {
+                if (!r.matches(type)) continue;
+                boolean hit = r.kind == Kind.SEASON ? !d.isBefore(r.from) && !d.isAfter(r.to)
+                        : r.kind == Kind.WEEKDAY && r.days.contains(d.getDayOfWeek());
+                if (!hit) continue;
+                if (r.percent) mult *= 1 + r.value / 100; else add += r.value;
+            }
+            return base * mult + add;
+        }
+
+        Quoter quoter(LocalDate from, LocalDate to) { return new Quoter(from, to); }
+
+        double quote(Room r, LocalDate from, LocalDate to) { return quoter(from, to).quote(r); }
+
+        // Quotes one stay for any number of rooms; the per-night occupancy of each room type is looked up
+        // once and shared by every room of that type.
+        class Quoter {
+            final LocalDate from, to;
+            private final Map<String,double[]> occupancy = new HashMap<>();
+
+            private Quoter(LocalDate from, LocalDate to) { this.from = from; this.to = to; }
+
+            // Total for the stay, rounded to cents and never negative.
+            double quote(Room room) {
+                Table t = table(room.type);
+                double base = Double.isNaN(t.base) ? room.price : t.base, total = 0;
+                long first = from.toEpochDay(), last = to.toEpochDay();
+                double[] occ = t.occupancy.length == 0 ? null : occupancy.computeIfAbsent(room.type, this::occupancyOf);
+                for (long d = first; d < last; d++) {
+                    double rate = nightRate(t, base, room.type, d);
+                    if (occ != null) {
+                        for (Rule r : t.occupancy) if (occ[(int) (d - first)] >= r.threshold) { rate = r.adjust(rate, 1); break; }
+                    }
+                    total += Math.max(0, rate);
+                }
+                int nights = (int) (last - first);
+                for (Rule r : t.stay) if (nights >= r.threshold) { total = r.adjust(total, nights); break; }
+                return Math.max(0, Math.round(total * 100) / 100.0);
+            }
+
+            private double[] occupancyOf(String type) {
+                int n = (int) (to.toEpochDay() - from.toEpochDay());
+                double[] occ = new double[Math.max(0, n)];
+                for (int i = 0; i < occ.length; i++) occ[i] = analytics.range(type, from.plusDays(i), from.plusDays(i + 1)).occupancy();
+                return occ;
+            }
+        }
+    }
+
+    // Prices a new stay from the current rate plans; the amount stays unknown for a room that does not exist.
+    static Booking quoted(Booking b) {
+        Room r = engine.room(b.roomNumber);
+        if (r != null) b.amount = pricing.quote(r, b.date, b.checkOut);
+        return b;
+    }
+
+    // ---------- Availability search ----------
+    // "Rooms of this type and price range free for N consecutive nights somewhere in this window".
+    // Each candidate room gets a bitmap of its free nights over the window, transposed from the occupancy
+    // pages. ANDing it with copies of itself shifted down by 1, 2, 4, ... nights (doubling, so O(log N)
+    // word-wide ANDs per room) leaves a bit on every night a stay of N nights can start; each run of such
+    // bits is one hit. Rooms go through in blocks in room-number order, so the requested page of hits
+    // streams out while the rest are only counted (and not quoted).
+    static class AvailabilitySearch {
+        static final int MAX_WINDOW = 732;
+        private static final int BLOCK = 256;
+
+        static final class Criteria {
+            final String type;                  // null: any type
+            final double minPrice, maxPrice;
+            final int nights;
+            final LocalDate from, to;           // every night of the stay lies in [from, to)
+
+            Criteria(String type, double minPrice, double maxPrice, int nights, LocalDate from, LocalDate to) {
+                if (nights < 1 || nights > MAX_NIGHTS) throw new IllegalArgumentException("nights must be between 1 and " + MAX_NIGHTS);
+                if (!to.isAfter(from)) throw new IllegalArgumentException("search window is empty");
+                if (to.toEpochDay() - from.toEpochDay() > MAX_WINDOW) throw new IllegalArgumentException("search window is longer than " + MAX_WINDOW + " days");
+                this.type = type; this.minPrice = minPrice; this.maxPrice = maxPrice; this.nights = nights; this.from = from; this.to = to;
+            }
+        }
+
+        // A room with a run of possible check-ins: a stay of the searched length fits on each of firstIn..lastIn.
+        // The quote is for the earliest of them.
+        static final class Hit {
+            final Room room; final LocalDate firstIn, lastIn; final double quote;
+            Hit(Room room, LocalDate firstIn, LocalDate lastIn, double quote) { this.room = room; this.firstIn = firstIn; this.lastIn = lastIn; this.quote = quote; }
+            int checkIns() { return (int) (lastIn.toEpochDay() - firstIn.toEpochDay()) + 1; }
+        }
+
+        // Hands hits offset .. offset + limit - 1 (by room, then date) to sink as they are found, on the
+        // calling thread, and returns the total number of hits.
+        static int search(Criteria c, int offset, int limit, Consumer<Hit> sink) {
+            long t0 = Metrics.start();
+            engine.ensureLoaded(c.from, c.to);
+            List<Room> rooms = engine.searchRooms(c.type, c.minPrice, c.maxPrice);
+            int days = (int) (c.to.toEpochDay() - c.from.toEpochDay());
+            int total = 0;
+            for (int b = 0; b < rooms.size(); b += BLOCK) {
+                List<Room> block = rooms.subList(b, Math.min(rooms.size(), b + BLOCK));
+                int[] numbers = new int[block.size()];
+                for (int k = 0; k < numbers.length; k++) numbers[k] = block.get(k).number;
+                BitSet[] booked = engine.bookedNights(numbers, c.from, days);
+                for (int k = 0; k < numbers.length; k++) {
+                    BitSet starts = checkIns(booked[k], days, c.nights);
+                    for (int i = starts.nextSetBit(0); i >= 0; i = starts.nextSetBit(i)) {
+                        int end = starts.nextClearBit(i);
+                        if (total >= offset && total - offset < limit) {
+                            LocalDate in = c.from.plusDays(i);
+                            sink.accept(new Hit(block.get(k), in, c.from.plusDays(end - 1), pricing.quote(block.get(k), in, in.plusDays(c.nights))));
+                        }
+                        total++;
+                        i = end;
+                    }
+                }
+            }
+            Metrics.stop(Metrics.Op.SEARCH, t0);
+            return total;
+        }
+
+        // Nights (bit offsets into the window) on which a stay of n nights can start.
+        static BitSet checkIns(BitSet booked, int days, int n) {
+            BitSet run = new BitSet(days);
+            run.set(0, days);
+            run.andNot(booked);
+            // invariant: bit i is set when nights i .. i+m-1 are all free; get(k, days) is the bitmap shifted down by k
+            int m = 1;
+            for (; m * 2 <= n; m *= 2) run.and(run.get(m, days));
+            if (m < n) run.and(run.get(n - m, days)); // the two runs of m overlap and cover i .. i+n-1
+            return run;
+        }
+    }
+
+    // ---------- Metrics ----------
+    // Latency histograms and counters for the hot paths. Recording is lock-free and allocation-free
+    // (a nanoTime pair and a few atomic increments), so it stays on in production. Exposed over JMX as
+    // hotel:type=Metrics,name=<op>, appended to metrics.csv every -Dhrs.metricsInterval seconds
+    // (default 60, 0 = off) and shown in the admin Diagnostics tab.
+    static final class Metrics {
+        enum Op {
+            LOAD_ROOMS("load.rooms"), LOAD_BOOKINGS("load.bookings"), SAVE_ROOMS("save.rooms"), SAVE_BOOKINGS("save.bookings"),
+            AVAILABILITY("availability"), SEARCH("search"), BOOK("book"), GROUP_BOOK("book.group"), CANCEL("cancel"), JOURNAL_APPEND("journal.append"),
+            PARTITION_THAW("partition.thaw"), DB_WRITE("db.write"), DB_FETCH("db.fetch"), SYNC_APPLY("sync.apply"), EXPORT_CSV("export.csv"), EXPORT_PDF("export.pdf"),
+            LOAD_RATES("load.rates"), HTTP_REQUEST("http.request"),
+            // errors only: GUI background work that failed outside any operation above
+            GUI("gui");
+
+            final String label;
+            final LatencyHistogram latency = new LatencyHistogram();
+            final AtomicLong errors = new AtomicLong();
+            // bookings refused over a conflicting stay, cancels with no stay to cancel, other instances' stays that conflict here
+            final AtomicLong rejected = new AtomicLong();
+
+            Op(String label) { this.label = label; }
+            @Override public String toString() { return label; }
+        }
+
+        static final String[] COLUMNS = {"Operation", "Count", "Errors", "Rejected", "Mean", "p50", "p90", "p99", "p99.9", "Max"};
+
+        private static final AtomicBoolean published = new AtomicBoolean();
+
+        private Metrics() {}
+
+        static long start() { return System.nanoTime(); }
+        static void stop(Op op, long start) { op.latency.record(System.nanoTime() - start); }
+        // For operations that throw to their caller: ok == false counts the call as an error.
+        static void stop(Op op, long start, boolean ok) { stop(op, start); if (!ok) op.errors.incrementAndGet(); }
+        // For the catch-and-print sites: counts the failure and keeps the stack trace on stderr.
+        static void error(Op op, Throwable t) { op.errors.incrementAndGet(); t.printStackTrace(); }
+
+        // Registers the MXBeans and starts the periodic CSV dump. Safe to call more than once.
+        static void publish(Path csv, int intervalSecs) {
+            if (!published.compareAndSet(false, true)) return;
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                for (Op op : Op.values()) mbs.registerMBean(new OperationBean(op), new ObjectName("hotel:type=Metrics,name=" + op.label));
+            } catch (Exception e) { e.printStackTrace(); }
+            if (intervalSecs <= 0) return;
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            Sample[] last = new Sample[Op.values().length];
+            for (Op op : Op.values()) last[op.ordinal()] = new Sample(op);
+            dumper.scheduleAtFixedRate(() -> dump(csv, last), intervalSecs, intervalSecs, TimeUnit.SECONDS);
+        }
+
+        // Appends one row per operation that ran since the previous dump; figures cover that interval only.
+        private static void dump(Path csv, Sample[] last) {
+            StringBuilder sb = new StringBuilder();
+            if (!Files.exists(csv)) sb.append("time,op,count,errors,rejected,mean_us,p50_us,p90_us,p99_us,p999_us,max_us\n");
+            String now = LocalDateTime.now().withNano(0).toString();
+            for (Op op : Op.values()) {
+                Sample s = new Sample(op), d = s.since(last[op.ordinal()]);
+                last[op.ordinal()] = s;
+                if (d.latency.count == 0 && d.errors == 0) continue;
+                sb.append(now).append(',').append(op.label).append(',').append(d.latency.count)
+                  .append(',').append(d.errors).append(',').append(d.rejected)
+                  .append(',').append(micros((long) d.latency.mean()));
+                for (double p : new double[] {50, 90, 99, 99.9}) sb.append(',').append(micros(d.latency.percentile(p)));
+                sb.append(',').append(micros(d.latency.max())).append('\n');
+            }
+            try { Files.write(csv, sb.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND); }
+            catch (IOException e) { e.printStackTrace(); }
+        }
+
+        // Cumulative figures for the Diagnostics tab, one row per operation.
+        static List<String[]> table() {
+            List<String[]> rows = new ArrayList<>();
+            for (Op op : Op.values()) {
+                Sample s = new Sample(op);
+                LatencyHistogram.Snapshot h = s.latency;
+                String[] row = {op.label, String.valueOf(h.count), String.valueOf(s.errors), String.valueOf(s.rejected), "-", "-", "-", "-", "-", "-"};
+                if (h.count > 0) {
+                    long[] ns = {(long) h.mean(), h.percentile(50), h.percentile(90), h.percentile(99), h.percentile(99.9), h.max()};
+                    for (int i = 0; i < ns.length; i++) row[4 + i] = duration(ns[i]);
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        private static String micros(long nanos) { return String.format(Locale.ROOT, "%.1f", nanos / 1e3); }
+
+        static String duration(long nanos) {
+            if (nanos < 1_000) return nanos + " ns";
+            if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1f µs", nanos / 1e3);
+            if (nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+            return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+        }
+
+        private static final class Sample {
+            final LatencyHistogram.Snapshot latency; final long errors, rejected;
+            Sample(Op op) { this(op.latency.snapshot(), op.errors.get(), op.rejected.get()); }
+            Sample(LatencyHistogram.Snapshot latency, long errors, long rejected) { this.latency = latency; this.errors = errors; this.rejected = rejected; }
+            Sample since(Sample prev) { return new Sample(latency.since(prev.latency), errors - prev.errors, rejected - prev.rejected); }
+        }
+
+        // JMX view of one operation; latencies in microseconds, cumulative since startup.
+        public interface OperationMXBean {
+            long getCount();
+            long getErrors();
+            long getRejected();
+            double getMeanMicros();
+            double getP50Micros();
+            double getP90Micros();
+            double getP99Micros();
+            double getP999Micros();
+            double getMaxMicros();
+        }
+
+        private static final class OperationBean implements OperationMXBean {
+            private final Op op;
+            OperationBean(Op op) { this.op = op; }
+            @Override public long getCount() { return op.latency.snapshot().count; }
+            @Override public long getErrors() { return op.errors.get(); }
+            @Override public long getRejected() { return op.rejected.get(); }
+            @Override public double getMeanMicros() { return op.latency.snapshot().mean() / 1e3; }
+            @Override public double getP50Micros() { return op.latency.snapshot().percentile(50) / 1e3; }
+            @Override public double getP90Micros() { return op.latency.snapshot().percentile(90) / 1e3; }
+            @Override public double getP99Micros() { return op.latency.snapshot().percentile(99) / 1e3; }
+            @Override public double getP999Micros() { return op.latency.snapshot().percentile(99.9) / 1e3; }
+            @Override public double getMaxMicros() { return op.latency.snapshot().max() / 1e3; }
+        }
+    }
+
+    // Log-linear histogram in the style of HdrHistogram: 64 linear sub-buckets per power of two, so every
+    // value is reported within ~1.6% of what was recorded, from 1 ns up to 2^41 ns (~36 min; larger values clamp).
+    // record() is one array increment plus a sum; readers copy the counts into a Snapshot.
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 6, SUB = 1 << SUB_BITS, MAX_EXP = 40;
+        private static final long MAX_VALUE = (1L << (MAX_EXP + 1)) - 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray((MAX_EXP - SUB_BITS + 2) * SUB);
+        private final AtomicLong sum = new AtomicLong();
+
+        void record(long nanos) {
+            long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+            counts.incrementAndGet(index(v));
+            sum.addAndGet(v);
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+        }
+
+        // Highest value that lands in bucket i.
+        static long value(int i) {
+            if (i < SUB) return i;
+            return ((long) (SUB + i % SUB + 1) << (i / SUB - 1)) - 1;
+        }
+
+        Snapshot snapshot() {
+            long[] c = new long[counts.length()];
+            for (int i = 0; i < c.length; i++) c[i] = counts.get(i);
+            return new Snapshot(c, sum.get());
+        }
+
+        static final class Snapshot {
+            final long[] counts; final long count, sum;
+
+            Snapshot(long[] counts, long sum) {
+                long n = 0;
+                for (long c : counts) n += c;
+                this.counts = counts; this.count = n; this.sum = sum;
+            }
+
+            Snapshot since(Snapshot prev) {
+                long[] c = counts.clone();
+                for (int i = 0; i < c.length; i++) c[i] -= prev.counts[i];
+                return new Snapshot(c, sum - prev.sum);
+            }
+
+            double mean() { return count == 0 ? 0 : (double) sum / count; }
+
+            long percentile(double p) {
+                if (count == 0) return 0;
+                long rank = Math.max(1, (long) Math.ceil(p / 100 * count)), seen = 0;
+                for (int i = 0; i < counts.length; i++) if ((seen += counts[i]) >= rank) return value(i);
+                return value(counts.length - 1);
+            }
+
+            long max() {
+                for (int i = counts.length - 1; i >= 0; i--) if (counts[i] > 0) return value(i);
+                return 0;
+            }
+        }
+    }
+
+    // ---------- Headless HTTP API ----------
+    // --server [port]: the same engine and persistence as the GUI, over the JDK HttpServer with one
+    // (virtual, where available) thread per request. Parameters come from the query string or an
+    // application/x-www-form-urlencoded body; responses are JSON.
+    //   GET    /rooms                                   list rooms
+    //   POST   /rooms          number, type, price      add a room
+    //   DELETE /rooms          number[, purge=true]     delete a room (optionally with its bookings)
+    //   GET    /availability   date[, nights]           every room with its availability and quote for the stay
+    //   GET    /search         from, to | days, nights[, type, minPrice, maxPrice, offset, limit]
+    //                                                   rooms free for that many consecutive nights in the window
+    //   GET    /bookings       room                     stays of one room
+    //   POST   /bookings       room, customer, date[, nights | checkout]
+    //   DELETE /bookings       room, date               cancel the stay covering that night
+    //   POST   /groups         rooms, customer, date[, nights | checkout]
+    //                                                   book several rooms (comma-separated) all or nothing
+    static class HttpApi {
+        static HttpServer start(int port) throws IOException {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+            server.createContext("/rooms", ex -> handle(ex, HttpApi::rooms));
+            server.createContext("/availability", ex -> handle(ex, HttpApi::availability));
+            server.createContext("/search", ex -> handle(ex, HttpApi::search));
+            server.createContext("/bookings", ex -> handle(ex, HttpApi::bookings));
+            server.createContext("/groups", ex -> handle(ex, HttpApi::groups));
+            server.setExecutor(newPerTaskExecutor());
+            server.start();
+            System.out.println("Listening on http://localhost:" + port);
+            return server;
+        }
+
+        interface Handler { Response apply(String method, Map<String,String> params); }
+
+        static class Response {
+            final int status; final String body;
+            Response(int status, String body) { this.status = status; this.body = body; }
+        }
+
+        private static void handle(HttpExchange ex, Handler h) throws IOException {
+            long t0 = Metrics.start();
+            Response res;
+            try {
+                res = h.apply(ex.getRequestMethod(), params(ex));
+            } catch (NumberFormatException e) {
+                res = error(400, "bad request: not a number (" + e.getMessage() + ")");
+            } catch (DateTimeParseException e) {
+                res = error(400, "bad request: not a yyyy-MM-dd date: " + e.getParsedString());
+            } catch (IllegalArgumentException | DateTimeException e) {
+                res = error(400, "bad request: " + e.getMessage());
+            } catch (Exception e) {
+                Metrics.error(Metrics.Op.HTTP_REQUEST, e);
+                res = error(500, "internal error");
+            }
+            byte[] out = res.body.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(res.status, out.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(out); }
+            Metrics.stop(Metrics.Op.HTTP_REQUEST, t0);
+        }
+
+        private static Map<String,String> params(HttpExchange ex) throws IOException {
+            Map<String,String> m = new HashMap<>();
+            parseForm(ex.getRequestURI().getRawQuery(), m);
+            try (InputStream in = ex.getRequestBody()) {
+                byte[] body = in.readAllBytes();
+                if (body.length > 0) parseForm(new String(body, StandardCharsets.UTF_8), m);
+            }
+            return m;
+        }
+
+        private static void parseForm(String s, Map<String,String> m) {
+            if (s == null || s.isEmpty()) return;
+            for (String kv : s.split("&")) {
+                int i = kv.indexOf('=');
+                String k = URLDecoder.decode(i < 0 ? kv : kv.substring(0, i), StandardCharsets.UTF_8);
+                String v = i < 0 ? "" : URLDecoder.decode(kv.substring(i + 1), StandardCharsets.UTF_8);
+                m.put(k, v);
+            }
+        }
+
+        private static String req(Map<String,String> p, String k) {
+            String v = p.get(k);
+            if (v == null || v.trim().isEmpty()) throw new IllegalArgumentException("missing " + k);
+            return v.trim();
+        }
+
+        private static int intParam(Map<String,String> p, String k, int dflt, int min, int max) {
+            int v = p.containsKey(k) ? Integer.parseInt(p.get(k).trim()) : dflt;
+            if (v < min || v > max) throw new IllegalArgumentException(k + " must be between " + min + " and " + max);
+            return v;
+        }
+
+        // Check-out from checkout= or nights= (default one night), refused before any engine call unless
+        // the stay is 1..MAX_NIGHTS nights: every night of it gets checked and indexed.
+        private static LocalDate checkOut(Map<String,String> p, LocalDate in) {
+            if (!p.containsKey("checkout")) return in.plusDays(intParam(p, "nights", 1, 1, MAX_NIGHTS));
+            LocalDate out = LocalDate.parse(p.get("checkout").trim(), DATE_FMT);
+            long nights = out.toEpochDay() - in.toEpochDay();
+            if (nights < 1 || nights > MAX_NIGHTS) throw new IllegalArgumentException("stay must be between 1 and " + MAX_NIGHTS + " nights");
+            return out;
+        }
+
+        private static Response rooms(String method, Map<String,String> p) {
+            switch (method) {
+                case "GET": {
+                    StringBuilder sb = new StringBuilder("[");
+                    for (Room r : engine.rooms()) { if (sb.length() > 1) sb.append(','); roomJson(sb, r); }
+                    return new Response(200, sb.append(']').toString());
+                }
+                case "POST": {
+                    Room r = new Room(Integer.parseInt(req(p, "number")), req(p, "type"), Double.parseDouble(req(p, "price")));
+                    if (!engine.addRoom(r)) return error(409, "room already exists");
+                    return new Response(201, roomJson(new StringBuilder(), r).toString());
+                }
+                case "DELETE": {
+                    int num = Integer.parseInt(req(p, "number"));
+                    if (engine.room(num) == null) return error(404, "no such room");
+                    engine.removeRoom(num, Boolean.parseBoolean(p.get("purge")));
+                    return new Response(200, "{\"deleted\":" + num + "}");
+                }
+                default: return error(405, "method not allowed");
+            }
+        }
+
+        private static Response availability(String method, Map<String,String> p) {
+            if (!method.equals("GET")) return error(405, "method not allowed");
+            LocalDate in = LocalDate.parse(req(p, "date"), DATE_FMT);
+            LocalDate out = checkOut(p, in);
+            long t0 = Metrics.start();
+            engine.ensureLoaded(in, out);
+            Pricing.Quoter q = pricing.quoter(in, out);
+            StringBuilder sb = new StringBuilder("[");
+            for (Room r : engine.rooms()) {
+                if (sb.length() > 1) sb.append(',');
+                roomJson(sb, r).setLength(sb.length() - 1);
+                sb.append(",\"available\":").append(engine.isFree(r.number, in, out))
+                  .append(",\"quote\":").append(formatAmount(q.quote(r))).append('}');
+            }
+            Metrics.stop(Metrics.Op.AVAILABILITY, t0);
+            return new Response(200, sb.append(']').toString());
+        }
+
+        private static Response search(String method, Map<String,String> p) {
+            if (!method.equals("GET")) return error(405, "method not allowed");
+            LocalDate from = LocalDate.parse(req(p, "from"), DATE_FMT);
+            LocalDate to = p.containsKey("to") ? LocalDate.parse(p.get("to").trim(), DATE_FMT)
+                    : from.plusDays(intParam(p, "days", 0, 1, AvailabilitySearch.MAX_WINDOW));
+            String type = p.getOrDefault("type", "").trim();
+            AvailabilitySearch.Criteria c = new AvailabilitySearch.Criteria(type.isEmpty() ? null : type,
+                    p.containsKey("minPrice") ? Double.parseDouble(p.get("minPrice")) : 0,
+                    p.containsKey("maxPrice") ? Double.parseDouble(p.get("maxPrice")) : Double.MAX_VALUE,
+                    Integer.parseInt(req(p, "nights")), from, to);
+            int offset = intParam(p, "offset", 0, 0, Integer.MAX_VALUE);
+            int limit = intParam(p, "limit", 100, 1, 1000);
+            StringBuilder hits = new StringBuilder("[");
+            int total = AvailabilitySearch.search(c, offset, limit, h -> {
+                if (hits.length() > 1) hits.append(',');
+                roomJson(hits, h.room).setLength(hits.length() - 1);
+                hits.append(",\"firstCheckIn\":\"").append(h.firstIn.format(DATE_FMT))
+                    .append("\",\"lastCheckIn\":\"").append(h.lastIn.format(DATE_FMT))
+                    .append("\",\"quote\":").append(formatAmount(h.quote)).append('}');
+            });
+            return new Response(200, "{\"total\":" + total + ",\"offset\":" + offset + ",\"hits\":" + hits.append(']') + "}");
+        }
+
+        private static Response bookings(String method, Map<String,String> p) {
+            switch (method) {
+                case "GET": {
+                    int room = Integer.parseInt(req(p, "room"));
+                    // the hot window (the last hrs.hotMonths months and the future) unless from/to ask for older
+                    // history, so listing a room does not thaw every archived month
+                    LocalDate from = p.containsKey("from") ? LocalDate.parse(p.get("from").trim(), DATE_FMT) : YearMonth.now().minusMonths(HOT_MONTHS).atDay(1);
+                    LocalDate to = p.containsKey("to") ? LocalDate.parse(p.get("to").trim(), DATE_FMT) : LocalDate.MAX;
+                    if (!to.isAfter(from)) throw new IllegalArgumentException("to must be after from");
+                    engine.ensureLoaded(from, to);
+                    StringBuilder sb = new StringBuilder("[");
+                    for (Booking b : engine.overlapping(room, from, to)) { if (sb.length() > 1) sb.append(','); bookingJson(sb, b); }
+                    return new Response(200, sb.append(']').toString());
+                }
+                case "POST": {
+                    int room = Integer.parseInt(req(p, "room"));
+                    LocalDate in = LocalDate.parse(req(p, "date"), DATE_FMT);
+                    LocalDate out = checkOut(p, in);
+                    Booking b = quoted(new Booking(room, req(p, "customer"), in, out));
+                    String refused = engine.reserve(b);
+                    if (refused != null) return error(refused.equals("unknown room") ? 404 : 409, refused);
+                    return new Response(201, bookingJson(new StringBuilder(), b).toString());
+                }
+                case "DELETE": {
+                    Booking b = engine.cancel(Integer.parseInt(req(p, "room")), LocalDate.parse(req(p, "date"), DATE_FMT));
+                    if (b == null) return error(404, "no booking covers that night");
+                    return new Response(200, bookingJson(new StringBuilder(), b).toString());
+                }
+                default: return error(405, "method not allowed");
+            }
+        }
+
+        private static Response groups(String method, Map<String,String> p) {
+            if (!method.equals("POST")) return error(405, "method not allowed");
+            LocalDate in = LocalDate.parse(req(p, "date"), DATE_FMT);
+            LocalDate out = checkOut(p, in);
+            String customer = req(p, "customer");
+            List<Booking> bs = new ArrayList<>();
+            for (String r : req(p, "rooms").split(",")) if (!r.trim().isEmpty()) bs.add(quoted(new Booking(Integer.parseInt(r.trim()), customer, in, out)));
+            String[] refused = engine.reserveAll(bs);
+            StringBuilder sb = new StringBuilder("[");
+            if (refused != null) {
+                for (int i = 0; i < bs.size(); i++) {
+                    if (refused[i] == null) continue;
+                    if (sb.length() > 1) sb.append(',');
+                    sb.append("{\"room\":").append(bs.get(i).roomNumber).append(",\"error\":");
+                    jsonString(sb, refused[i]);
+                    sb.append('}');
+                }
+                return new Response(409, "{\"error\":\"group refused, nothing was booked\",\"refused\":" + sb.append(']') + "}");
+            }
+            for (Booking b : bs) { if (sb.length() > 1) sb.append(','); bookingJson(sb, b); }
+            return new Response(201, sb.append(']').toString());
+        }
+
+        private static StringBuilder roomJson(StringBuilder sb, Room r) {
+            sb.append("{\"number\":").append(r.number).append(",\"type\":");
+            jsonString(sb, r.type);
+            return sb.append(",\"price\":").append(r.price).append('}');
+        }
+
+        private static StringBuilder bookingJson(StringBuilder sb, Booking b) {
+            sb.append("{\"room\":").append(b.roomNumber).append(",\"customer\":");
+            jsonString(sb, b.customer);
+            return sb.append(",\"checkIn\":\"").append(b.date.format(DATE_FMT))
+                    .append("\",\"checkOut\":\"").append(b.checkOut.format(DATE_FMT))
+                    .append("\",\"nights\":").append(b.nights())
+                    .append(",\"amount\":").append(Double.isNaN(b.amount) ? "null" : formatAmount(b.amount)).append('}');
+        }
+
+        private static Response error(int status, String msg) {
+            StringBuilder sb = new StringBuilder("{\"error\":");
+            jsonString(sb, msg);
+            return new Response(status, sb.append('}').toString());
+        }
+
+        static void jsonString(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+    }
+
+    // Closed-loop load generator against a running --server instance: each worker issues
+    // availability searches (80%) and bookings (20%) back to back and records the latency.
+    // Run with: --loadgen [baseUrl] [seconds] [concurrency]
+    static class LoadGenerator {
+        static void run(String base, int secs, int conc) throws Exception {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(java.time.Duration.ofSeconds(5)).build();
+            String roomsJson = client.send(HttpRequest.newBuilder(URI.create(base + "/rooms")).build(), HttpResponse.BodyHandlers.ofString()).body();
+            List<Integer> roomNums = new ArrayList<>();
+            java.util.regex.Matcher m = java.util.regex.Pattern.compile("\"number\":(\\d+)").matcher(roomsJson);
+            while (m.find()) roomNums.add(Integer.parseInt(m.group(1)));
+            if (roomNums.isEmpty()) { System.out.println("No rooms on " + base); return; }
+
+            long end = System.nanoTime() + secs * 1_000_000_000L;
+            LocalDate today = LocalDate.now();
+            List<long[]> samples = new CopyOnWriteArrayList<>();
+            AtomicLong errors = new AtomicLong(), booked = new AtomicLong();
+            ExecutorService ex = newPerTaskExecutor();
+            List<Future<?>> fs = new ArrayList<>();
+            for (int w = 0; w < conc; w++) {
+                int id = w;
+                fs.add(ex.submit(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    long[] lat = new long[1 << 16];
+                    int n = 0;
+                    while (System.nanoTime() < end) {
+                        LocalDate d = today.plusDays(rnd.nextInt(365));
+                        HttpRequest rq;
+                        boolean book = rnd.nextInt(5) == 0;
+                        if (book) {
+                            String form = "room=" + roomNums.get(rnd.nextInt(roomNums.size())) + "&customer=load" + id
+                                    + "&date=" + d.format(DATE_FMT) + "&nights=" + (1 + rnd.nextInt(3));
+                            rq = HttpRequest.newBuilder(URI.create(base + "/bookings"))
+                                    .header("Content-Type", "application/x-www-form-urlencoded")
+                                    .POST(HttpRequest.BodyPublishers.ofString(form)).build();
+                        } else {
+                            rq = HttpRequest.newBuilder(URI.create(base + "/availability?date=" + d.format(DATE_FMT) + "&nights=2")).build();
+                        }
+                        long t0 = System.nanoTime();
+                        try {
+                            int st = client.send(rq, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (st >= 500) errors.incrementAndGet();
+                            if (book && st == 201) booked.incrementAndGet();
+                        } catch (Exception e) { errors.incrementAndGet(); }
+                        if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                        lat[n++] = System.nanoTime() - t0;
+                    }
+                    samples.add(Arrays.copyOf(lat, n));
+                    return null;
+                }));
+            }
+            for (Future<?> f : fs) f.get();
+            ex.shutdown();
+
+            int total = 0;
+            for (long[] a : samples) total += a.length;
+            long[] all = new long[total];
+            int k = 0;
+            for (long[] a : samples) { System.arraycopy(a, 0, all, k, a.length); k += a.length; }
+            Arrays.sort(all);
+            System.out.printf("%d requests in %d s with %d workers: %.0f req/s, %d errors, %d bookings made%n",
+                    total, secs, conc, total / (double) secs, errors.get(), booked.get());
+            if (total > 0)
+                System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                        all[total / 2] / 1e6, all[(int) Math.min(total - 1, total * 0.99)] / 1e6, all[total - 1] / 1e6);
+        }
+    }
+
+    // Virtual-thread-per-task executor when the runtime has them (JDK 21+), otherwise a cached thread pool.
+    static ExecutorService newPerTaskExecutor() {
+        try { return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null); }
+        catch (ReflectiveOperationException e) { return Executors.newCachedThreadPool(); }
+    }
+
+    // Growable primitive int list, used where boxing a List<Integer> per row would dominate.
+    static final class IntList {
+        private int[] a = new int[16];
+        private int size;
+        void add(int v) { if (size == a.length) a = Arrays.copyOf(a, size * 2); a[size++] = v; }
+        int get(int i) { return a[i]; }
+        int size() { return size; }
+    }
+
+    // ---------- Bulk CSV import ----------
+    // Streaming importer for room,customer,checkIn[,checkOut] files (same layout as bookings.csv and the CSV export).
+    // The file is cut into newline-aligned byte ranges that are read through a FileChannel and parsed
+    // in parallel straight from bytes; only the customer name becomes a String. Results are merged
+    // in file order into the booking engine, so conflicts with existing bookings (or earlier rows
+    // of the same file) are rejected.
+    static class BookingImporter {
+        private static final int MIN_CHUNK = 1 << 20, MAX_CHUNK = 16 << 20;
+
+        static class Result {
+            final List<ChunkResult> chunks;
+            final long bytes, parseNanos;
+            int accepted;
+            long mergeNanos;
+            final List<String> rejected = new ArrayList<>();
+
+            Result(List<ChunkResult> chunks, long bytes, long parseNanos) { this.chunks = chunks; this.bytes = bytes; this.parseNanos = parseNanos; }
+
+            int rows() { int n = 0; for (ChunkResult c : chunks) n += c.rooms.size() + c.rejectLines.size(); return n; }
+
+            // Rows go in through BookingEngine.restore, so they are not journaled one by one;
+            // callers write a single snapshot afterwards.
+            void mergeInto() {
+                long t0 = System.nanoTime();
+                // rows going into archived months are checked against that history, so load it first
+                long minDay = Long.MAX_VALUE;
+                for (ChunkResult c : chunks) for (int i = 0; i < c.days.size(); i++) minDay = Math.min(minDay, c.days.get(i));
+                if (minDay != Long.MAX_VALUE) engine.ensureLoaded(LocalDate.ofEpochDay(minDay), LocalDate.MAX);
+                // with live sync the journal is the only place the other instances learn about the import from
+                List<Booking> merged = sync != null ? new ArrayList<>() : null;
+                engine.restoreAll(restore -> mergeChunks(restore, merged));
+                if (merged != null && !merged.isEmpty()) recordGroup(merged);
+                mergeNanos = System.nanoTime() - t0;
+            }
+
+            private void mergeChunks(Predicate<Booking> restore, List<Booking> merged) {
+                int lineBase = 0;
+                for (ChunkResult c : chunks) {
+                    int ri = 0;
+                    for (int i = 0; i < c.rooms.size(); i++) {
+                        // parse rejects are interleaved back in by line number so the report stays in file order
+                        while (ri < c.rejectLines.size() && c.rejectLines.get(ri) < c.lineNos.get(i)) { addReject(lineBase, c, ri); ri++; }
+                        int room = c.rooms.get(i);
+                        LocalDate d = LocalDate.ofEpochDay(c.days.get(i));
+                        Booking b = new Booking(room, c.customers.get(i), d, d.plusDays(c.nights.get(i)));
+                        if (c.cents.get(i) != Integer.MIN_VALUE) b.amount = c.cents.get(i) / 100.0;
+                        String why = engine.room(room) == null ? "unknown room"
+                                : !restore.test(b) ? "room already booked for these dates" : null;
+                        if (why != null) {
+                            rejected.add("line " + (lineBase + c.lineNos.get(i) + 1) + ": " + why + ": " + formatBooking(b));
+                            continue;
+                        }
+                        if (partitions != null) partitions.markDirty(b);
+                        if (merged != null) merged.add(b);
+                        accepted++;
+                    }
+                    for (; ri < c.rejectLines.size(); ri++) addReject(lineBase, c, ri);
+                    lineBase += c.lineCount;
+                }
+            }
+
+            private void addReject(int lineBase, ChunkResult c, int ri) {
+                rejected.add("line " + (lineBase + c.rejectLines.get(ri) + 1) + ": " + c.rejectReasons.get(ri));
+            }
+
+            String summary() {
+                double secs = (parseNanos + mergeNanos) / 1e9;
+                return String.format("Imported %d of %d rows (%d rejected) from %.1f MB in %.2f s: %.0f rows/sec (parse %.2f s, merge %.2f s)",
+                        accepted, rows(), rejected.size(), bytes / 1e6, secs, rows() / Math.max(secs, 1e-9),
+                        parseNanos / 1e9, mergeNanos / 1e9);
+            }
+        }
+
+        static class ChunkResult {
+            final IntList rooms = new IntList(), days = new IntList(), nights = new IntList(), lineNos = new IntList();
+            final IntList cents = new IntList();  // Integer.MIN_VALUE when the row has no amount
+            final List<String> customers = new ArrayList<>();
+            final IntList rejectLines = new IntList();
+            final List<String> rejectReasons = new ArrayList<>();
+            int lineCount;
+        }
+
+        static Result parse(Path file, ForkJoinPool pool) throws IOException {
+            long t0 = System.nanoTime();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                long chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, size / Math.max(1, pool.getParallelism() * 4L)));
+                List<Long> cuts = new ArrayList<>();
+                cuts.add(0L);
+                for (long pos = chunk; pos < size; pos += chunk) {
+                    long c = nextLineStart(ch, Math.max(pos, cuts.get(cuts.size() - 1)), size);
+                    if (c >= size) break;
+                    if (c > cuts.get(cuts.size() - 1)) cuts.add(c);
+                }
+                cuts.add(size);
+                List<ForkJoinTask<ChunkResult>> tasks = new ArrayList<>();
+                for (int i = 0; i + 1 < cuts.size(); i++) {
+                    long from = cuts.get(i), to = cuts.get(i + 1);
+                    boolean first = i == 0;
+                    tasks.add(pool.submit(() -> parseRange(ch, from, to, first)));
+                }
+                List<ChunkResult> results = new ArrayList<>();
+                for (ForkJoinTask<ChunkResult> t : tasks) results.add(t.join());
+                return new Result(results, size, System.nanoTime() - t0);
+            }
+        }
+
+        private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            while (pos < size) {
+                probe.clear();
+                int n = ch.read(probe, pos);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) if (probe.get(i) == '\n') return pos + i + 1;
+                pos += n;
+            }
+            return size;
+        }
+
+        private static ChunkResult parseRange(FileChannel ch, long from, long to, boolean first) throws IOException {
+            byte[] data = new byte[(int) (to - from)];
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            while (buf.hasRemaining()) if (ch.read(buf, from + buf.position()) < 0) break;
+            ChunkResult res = new ChunkResult();
+            int start = 0, line = 0, n = buf.position();
+            while (start < n) {
+                int end = start;
+                while (end < n && data[end] != '\n') end++;
+                int stop = end;
+                if (stop > start && data[stop - 1] == '\r') stop--;
+                if (!(first && line == 0 && isHeader(data, start, stop))) parseLine(data, start, stop, line, res);
+                line++;
+                start = end + 1;
+            }
+            res.lineCount = line;
+            return res;
+        }
+
+        private static boolean isHeader(byte[] d, int s, int e) {
+            return e > s && (d[s] < '0' || d[s] > '9') && d[s] != ' ';
+        }
+
+        private static void parseLine(byte[] d, int s, int e, int line, ChunkResult res) {
+            int a = s; while (a < e && d[a] == ' ') a++;
+            if (a == e) return; // blank line
+            int c1 = -1, c2 = -1;
+            for (int i = s; i < e; i++) if (d[i] == ',') { c1 = i; break; }
+            for (int i = e - 1; i > c1; i--) if (d[i] == ',') { c2 = i; break; }
+            if (c1 < 0 || c2 < 0) { reject(res, line, "expected room,customer,date", d, s, e); return; }
+            int room = parseInt(d, s, c1);
+            int day = parseDate(d, c2 + 1, e), cents = Integer.MIN_VALUE;
+            if (day == Integer.MIN_VALUE && c2 > c1) {
+                // trailing amount column, as written by the CSV export
+                long amt = parseCents(d, c2 + 1, e);
+                if (amt != -2) {
+                    if (amt >= 0) cents = (int) amt;
+                    int end = c2;
+                    c2 = -1;
+                    for (int i = end - 1; i > c1; i--) if (d[i] == ',') { c2 = i; break; }
+                    if (c2 < 0) { reject(res, line, "expected room,customer,date", d, s, e); return; }
+                    day = parseDate(d, c2 + 1, end);
+                }
+            }
+            if (room == Integer.MIN_VALUE) { reject(res, line, "bad room number", d, s, e); return; }
+            if (day == Integer.MIN_VALUE) { reject(res, line, "bad date", d, s, e); return; }
+            int nights = 1, ce = c2;
+            int c3 = -1;
+            for (int i = c2 - 1; i > c1; i--) if (d[i] == ',') { c3 = i; break; }
+            if (c3 > 0) {
+                int in = parseDate(d, c3 + 1, c2);
+                if (in != Integer.MIN_VALUE) {
+                    if (day <= in) { reject(res, line, "check-out must be after check-in", d, s, e); return; }
+                    nights = day - in; day = in; ce = c3;
+                }
+            }
+            int cs = c1 + 1;
+            while (cs < ce && d[cs] == ' ') cs++;
+            while (ce > cs && d[ce - 1] == ' ') ce--;
+            if (cs == ce) { reject(res, line, "customer required", d, s, e); return; }
+            res.rooms.add(room);
+            res.days.add(day);
+            res.nights.add(nights);
+            res.cents.add(cents);
+            res.customers.add(new String(d, cs, ce - cs, StandardCharsets.UTF_8));
+            res.lineNos.add(line);
+        }
+
+        private static void reject(ChunkResult res, int line, String why, byte[] d, int s, int e) {
+            res.rejectLines.add(line);
+            res.rejectReasons.add(why + ": " + new String(d, s, e - s, StandardCharsets.UTF_8));
+        }
+
+        // Returns Integer.MIN_VALUE when the field is not a plain (space-padded) non-negative int.
+        private static int parseInt(byte[] d, int s, int e) {
+            while (s < e && d[s] == ' ') s++;
+            while (e > s && d[e - 1] == ' ') e--;
+            if (s == e || e - s > 9) return Integer.MIN_VALUE;
+            int v = 0;
+            for (int i = s; i < e; i++) {
+                int dg = d[i] - '0';
+                if (dg < 0 || dg > 9) return Integer.MIN_VALUE;
+                v = v * 10 + dg;
+            }
+            return v;
+        }
+
+        // A decimal amount in cents; -1 when blank, -2 when not an amount (or above Integer.MAX_VALUE cents).
+        private static long parseCents(byte[] d, int s, int e) {
+            while (s < e && d[s] == ' ') s++;
+            while (e > s && d[e - 1] == ' ') e--;
+            if (s == e) return -1;
+            long v = 0;
+            int dot = -1;
+            for (int i = s; i < e; i++) {
+                if (d[i] == '.' && dot < 0) { dot = i; continue; }
+                int dg = d[i] - '0';
+                if (dg < 0 || dg > 9 || (dot >= 0 && i - dot > 2)) return -2;
+                v = v * 10 + dg;
+                if (v > Integer.MAX_VALUE) return -2;
+            }
+            int decimals = dot < 0 ? 0 : e - dot - 1;
+            for (int i = decimals; i < 2; i++) v *= 10;
+            return v > Integer.MAX_VALUE ? -2 : v;
+        }
+
+        // yyyy-MM-dd to epoch day; Integer.MIN_VALUE when malformed.
+        private static int parseDate(byte[] d, int s, int e) {
+            while (s < e && d[s] == ' ') s++;
+            while (e > s && d[e - 1] == ' ') e--;
+            if (e - s != 10 || d[s + 4] != '-' || d[s + 7] != '-') return Integer.MIN_VALUE;
+            int y = parseInt(d, s, s + 4), m = parseInt(d, s + 5, s + 7), dd = parseInt(d, s + 8, s + 10);
+            if (y == Integer.MIN_VALUE || m == Integer.MIN_VALUE || dd == Integer.MIN_VALUE) return Integer.MIN_VALUE;
+            try { return (int) LocalDate.of(y, m, dd).toEpochDay(); }
+            catch (DateTimeException ex) { return Integer.MIN_VALUE; }
+        }
+    }
+
+    // ---------- Persistence ----------
+    // loadRooms()/saveRooms()/loadBookings()/saveBookings() run against the configured Storage and are
+    // timed and error-counted here; single changes are persisted by the storage's engine listener.
+    static void loadRooms() {
+        long t0 = Metrics.start();
+        try { engine.replaceRooms(storage.loadRooms()); }
+        catch (Exception e) { Metrics.error(Metrics.Op.LOAD_ROOMS, e); }
+        finally { Metrics.stop(Metrics.Op.LOAD_ROOMS, t0); }
+    }
+
+    static void saveRooms() {
+        long t0 = Metrics.start();
+        try { storage.saveRooms(engine.rooms()); }
+        catch (Exception e) { Metrics.error(Metrics.Op.SAVE_ROOMS, e); }
+        finally { Metrics.stop(Metrics.Op.SAVE_ROOMS, t0); }
+    }
+
+    static void loadBookings() {
+        long t0 = Metrics.start();
+        try { storage.loadBookings(); }
+        catch (Exception e) { Metrics.error(Metrics.Op.LOAD_BOOKINGS, e); }
+        finally { Metrics.stop(Metrics.Op.LOAD_BOOKINGS, t0); }
+    }
+
+    static void saveBookings() {
+        long t0 = Metrics.start();
+        try { storage.saveBookings(); }
+        catch (Exception e) { Metrics.error(Metrics.Op.SAVE_BOOKINGS, e); }
+        finally { Metrics.stop(Metrics.Op.SAVE_BOOKINGS, t0); }
+    }
+
+    // Where rooms and bookings are kept: FileStorage (the data directory: CSV or binary snapshots plus the
+    // journal, or monthly segments) or DatabaseStorage (-Dhrs.storage=h2). CSV import and export work the
+    // same over either, since they go through the engine.
+    interface Storage {
+        default void open() throws Exception {}
+        List<Room> loadRooms() throws Exception;
+        void saveRooms(List<Room> rooms) throws Exception;
+        // Replaces the engine's bookings with the stored ones (or the part of them kept in memory).
+        void loadBookings() throws Exception;
+        // Writes every booking; used after bulk changes (import), single changes go through listener().
+        void saveBookings() throws Exception;
+        BookingEngine.Listener listener();
+    }
+
+    static class FileStorage implements Storage {
+        @Override public List<Room> loadRooms() {
+            List<Room> rooms = new ArrayList<>();
+            if (preferBinary(ROOMS_BIN, ROOMS_CSV)) {
+                try { BinarySnapshot.readRooms(ROOMS_BIN, rooms); return rooms; }
+                catch (Exception e) { Metrics.error(Metrics.Op.LOAD_ROOMS, e); rooms.clear(); }
+            }
+            loadRoomsCsv(rooms);
+            return rooms;
+        }
+
+        @Override public void saveRooms(List<Room> rooms) throws IOException {
+            if (BINARY_SNAPSHOT) { BinarySnapshot.writeRooms(ROOMS_BIN, rooms); return; }
+            List<String> lines = rooms.stream()
+                    .map(r -> r.number + "," + r.type + "," + r.price)
+                    .collect(Collectors.toList());
+            Files.write(ROOMS_CSV, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override public void loadBookings() {
+            if (PARTITIONED) loadPartitions();
+            else engine.replaceBookings(loadSnapshot());
+            // snapshot first, then any journal left over from an interrupted compaction, then the live journal
+            replayJournal(BOOKINGS_JOURNAL_OLD);
+            journalReplayedTo = replayJournal(BOOKINGS_JOURNAL);
+        }
+
+        // In journal mode a full save is a compaction, so changes racing the write stay in the live journal.
+        @Override public void saveBookings() throws IOException {
+            if (journal != null) {
+                try { compactJournal(); return; }
+                catch (Exception e) { Metrics.error(Metrics.Op.SAVE_BOOKINGS, e); }
+            }
+            persistBookings();
+        }
+
+        // Bookings through the journal (or a full rewrite), rooms by rewriting the room file.
+        @Override public BookingEngine.Listener listener() {
+            return new BookingEngine.Listener() {
+                @Override public void booked(Booking b) { recordBooking(b); }
+                @Override public void bookedAll(List<Booking> bs) { recordGroup(bs); }
+                @Override public void cancelled(Booking b) { recordCancel(b.roomNumber, b.date); }
+                @Override public void roomAdded(Room r) { recordRoomAdded(r); HotelReservationSystem.saveRooms(); }
+                @Override public void roomRemoved(int room, boolean purgedBookings) {
+                    if (purgedBookings) recordRoomPurge(room);
+                    recordRoomRemoved(room);
+                    HotelReservationSystem.saveRooms();
+                }
+            };
+        }
+    }
+
+    private static void loadRoomsCsv(List<Room> rooms) {
+        try {
+            if (!Files.exists(ROOMS_CSV)) return;
+            List<String> lines = Files.readAllLines(ROOMS_CSV, StandardCharsets.UTF_8);
+            for (String ln : lines) {
+                if (ln.trim().isEmpty()) continue;
+                String[] p = ln.split(",", -1);
+                if (p.length >= 3) {
+                    int num = Integer.parseInt(p[0].trim());
+                    String type = p[1].trim();
+                    double price = Double.parseDouble(p[2].trim());
+                    rooms.add(new Room(num, type, price));
+                }
+            }
+        } catch (Exception e) { Metrics.error(Metrics.Op.LOAD_ROOMS, e); }
+    }
+
+    // Rate plans are kept as written, so the file stays hand-editable (comments included).
+    static void loadRates() {
+        long t0 = Metrics.start();
+        try {
+            if (Files.exists(RATES_CSV)) pricing.setRules(Pricing.parse(Files.readAllLines(RATES_CSV, StandardCharsets.UTF_8)));
+        } catch (Exception e) { Metrics.error(Metrics.Op.LOAD_RATES, e); }
+        finally { Metrics.stop(Metrics.Op.LOAD_RATES, t0); }
+    }
+
+    // Validates before writing: a plan that does not parse is neither saved nor applied.
+    static void saveRates(String text) throws IOException {
+        List<Pricing.Rule> rules = Pricing.parse(Arrays.asList(text.split("\r?\n")));
+        Path tmp = tempSibling(RATES_CSV);
+        Files.write(tmp, text.getBytes(StandardCharsets.UTF_8));
+        moveIntoPlace(tmp, RATES_CSV);
+        pricing.setRules(rules);
+    }
+
+    static String ratesText() throws IOException {
+        return Files.exists(RATES_CSV) ? new String(Files.readAllBytes(RATES_CSV), StandardCharsets.UTF_8) : "";
+    }
+
+    private static List<Booking> loadSnapshot() {
+        List<Booking> bookings = new ArrayList<>();
+        boolean loaded = false;
+        if (preferBinary(BOOKINGS_BIN, BOOKINGS_CSV)) {
+            try { BinarySnapshot.readBookings(BOOKINGS_BIN, bookings); loaded = true; }
+            catch (Exception e) { Metrics.error(Metrics.Op.LOAD_BOOKINGS, e); bookings.clear(); }
+        }
+        if (!loaded) loadBookingsCsv(bookings);
+        return bookings;
+    }
+
+    // Hot months only. The first run over an existing snapshot moves it into monthly segments.
+    private static void loadPartitions() {
+        if (partitions == null) {
+            partitions = new MonthlyPartitions(BOOKINGS_DIR, HOT_MONTHS);
+            engine.addListener(partitions);
+            engine.setLoader(partitions::ensureLoaded);
+        }
+        try {
+            if (partitions.open()) return;
+            engine.replaceBookings(loadSnapshot());
+            partitions.adoptAll();
+            partitions.flush();
+            for (Path legacy : new Path[] {BOOKINGS_CSV, BOOKINGS_BIN})
+                if (Files.exists(legacy)) Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) { Metrics.error(Metrics.Op.LOAD_BOOKINGS, e); }
+    }
+
+    private static void loadBookingsCsv(List<Booking> bookings) {
+        try {
+            if (!Files.exists(BOOKINGS_CSV)) return;
+            List<String> lines = Files.readAllLines(BOOKINGS_CSV, StandardCharsets.UTF_8);
+            for (String ln : lines) {
+                if (ln.trim().isEmpty()) continue;
+                String[] p = ln.split(",", -1);
+                if (p.length >= 3) bookings.add(parseBookingFields(p, 0));
+            }
+        } catch (Exception e) { Metrics.error(Metrics.Op.LOAD_BOOKINGS, e); }
+    }
+
+    // room,customer,checkIn[,checkOut[,amount]] starting at p[from]. The customer may itself contain commas;
+    // rows without a check-out date (the original single-date layout) load as one-night stays, and an
+    // empty or missing amount (stays booked before rate plans) stays unknown.
+    private static Booking parseBookingFields(String[] p, int from) {
+        int last = p.length - 1;
+        double amount = Double.NaN;
+        if (last - from >= 3 && isAmount(p[last])) {
+            if (!p[last].trim().isEmpty()) amount = Double.parseDouble(p[last].trim());
+            last--;
+        }
+        int num = Integer.parseInt(p[from].trim());
+        LocalDate in = LocalDate.parse(p[last].trim(), DATE_FMT), out = null;
+        if (last - from >= 3) {
+            try {
+                LocalDate prev = LocalDate.parse(p[last - 1].trim(), DATE_FMT);
+                out = in; in = prev; last--;
+            } catch (DateTimeException notADate) { /* single-date row */ }
+        }
+        String cust = String.join(",", Arrays.copyOfRange(p, from + 1, last)).trim();
+        if (out == null) out = in.plusDays(1);
+        else if (!out.isAfter(in)) throw new IllegalArgumentException("check-out must be after check-in: " + String.join(",", p));
+        Booking b = new Booking(num, cust, in, out);
+        b.amount = amount;
+        return b;
+    }
+
+    // Blank or a plain decimal; dates always contain '-', so the two never mix up.
+    private static boolean isAmount(String f) {
+        f = f.trim();
+        for (int i = 0; i < f.length(); i++) { char c = f.charAt(i); if ((c < '0' || c > '9') && c != '.') return false; }
+        return true;
+    }
+
+    private static String formatBooking(Booking b) {
+        return b.roomNumber + "," + b.customer + "," + b.date.format(DATE_FMT) + "," + b.checkOut.format(DATE_FMT) + "," + formatAmount(b.amount);
+    }
+
+    // RFC 4180 row: a field holding a comma, quote or line break is quoted, with quotes doubled. Labels such as
+    // "Room 101 (Suite, sea view)" stay one column.
+    static String csvRow(String[] fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            String f = fields[i];
+            if (i > 0) sb.append(',');
+            if (f.indexOf(',') < 0 && f.indexOf('"') < 0 && f.indexOf('\n') < 0 && f.indexOf('\r') < 0) sb.append(f);
+            else sb.append('"').append(f.replace("\"", "\"\"")).append('"');
+        }
+        return sb.toString();
+    }
+
+    // Two decimals, never in exponent notation; empty when unknown.
+    private static String formatAmount(double amount) {
+        if (Double.isNaN(amount)) return "";
+        long cents = Math.round(amount * 100);
+        return cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100;
+    }
+
+    // CSV export with a header row, in check-in order; streams from the engine's live view.
+    static void exportBookingsCsv(Path out) throws IOException {
+        long t0 = Metrics.start();
+        boolean ok = false;
+        engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX);
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write("room,customer,check_in,check_out,amount");
+            w.newLine();
+            for (Booking b : engine.bookings()) { w.write(formatBooking(b)); w.newLine(); }
+            ok = true;
+        } finally { Metrics.stop(Metrics.Op.EXPORT_CSV, t0, ok); }
+    }
+
+    // Writes the in-memory bookings out: the changed months in monthly storage, otherwise a full snapshot.
+    private static void persistBookings() throws IOException {
+        if (partitions != null) partitions.flush();
+        else writeBookingsSnapshot(new ArrayList<>(engine.bookings()));
+    }
+
+    // Written to a temp file and moved into place so a crash mid-write never leaves a half-written snapshot.
+    private static synchronized void writeBookingsSnapshot(List<Booking> snapshot) throws IOException {
+        if (BINARY_SNAPSHOT) { BinarySnapshot.writeBookings(BOOKINGS_BIN, snapshot); return; }
+        List<String> lines = snapshot.stream()
+                .map(HotelReservationSystem::formatBooking)
+                .collect(Collectors.toList());
+        Path tmp = tempSibling(BOOKINGS_CSV);
+        Files.write(tmp, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        moveIntoPlace(tmp, BOOKINGS_CSV);
+    }
+
+    private static Path tempSibling(Path p) { return p.resolveSibling(p.getFileName() + ".tmp"); }
+
+    private static void moveIntoPlace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Binary snapshot wins unless a CSV file is newer (e.g. one dropped in for import).
+    private static boolean preferBinary(Path bin, Path csv) {
+        try {
+            if (!Files.exists(bin)) return false;
+            if (!Files.exists(csv)) return true;
+            return Files.getLastModifiedTime(bin).compareTo(Files.getLastModifiedTime(csv)) >= 0;
+        } catch (IOException e) { return false; }
+    }
+
+    // ---------- Binary snapshots ----------
+    // Layout (big-endian):
+    //   int magic, int version, int stringCount, int recordCount,
+    //   stringCount x (unsigned short length, UTF-8 bytes)   -- customer names / room types, stored once
+    //   recordCount x fixed-width record
+    // Booking record (24 bytes): int checkInEpochDay, int nights, int roomNumber, int customerId, double amount (NaN if unknown)
+    //   (version 1 files have 12-byte records without nights; they load as one-night stays;
+    //    version 2 files have 16-byte records without the amount)
+    // Room record (16 bytes):    int roomNumber, int typeId, double price
+    static class BinarySnapshot {
+        static final int BOOKINGS_MAGIC = 0x48525342; // "HRSB"
+        static final int ROOMS_MAGIC = 0x48525352;    // "HRSR"
+        static final int VERSION = 3;
+
+        static void readBookings(Path file, List<Booking> out) throws IOException {
+            MappedByteBuffer buf = map(file);
+            String[] names = readHeader(buf, BOOKINGS_MAGIC);
+            int version = buf.getInt(4);
+            int count = buf.getInt(12);
+            if (out instanceof ArrayList) ((ArrayList<Booking>) out).ensureCapacity(out.size() + count);
+            for (int i = 0; i < count; i++) {
+                long day = buf.getInt();
+                int nights = version == 1 ? 1 : buf.getInt();
+                int room = buf.getInt();
+                int cust = buf.getInt();
+                double amount = version >= 3 ? buf.getDouble() : Double.NaN;
+                LocalDate in = LocalDate.ofEpochDay(day);
+                Booking b = new Booking(room, names[cust], in, in.plusDays(nights));
+                b.amount = amount;
+                out.add(b);
+            }
+        }
+
+        static void writeBookings(Path file, List<Booking> list) throws IOException {
+            Map<String,Integer> ids = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            int[] custIds = new int[list.size()];
+            for (int i = 0; i < custIds.length; i++) {
+                String c = list.get(i).customer;
+                Integer id = ids.get(c);
+                if (id == null) { id = names.size(); ids.put(c, id); names.add(c); }
+                custIds[i] = id;
+            }
+            Path tmp = tempSibling(file);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                writeHeader(out, BOOKINGS_MAGIC, names, list.size());
+                for (int i = 0; i < custIds.length; i++) {
+                    Booking b = list.get(i);
+                    out.writeInt((int) b.date.toEpochDay());
+                    out.writeInt(b.nights());
+                    out.writeInt(b.roomNumber);
+                    out.writeInt(custIds[i]);
+                    out.writeDouble(b.amount);
+                }
+            }
+            moveIntoPlace(tmp, file);
+        }
+
+        static void readRooms(Path file, List<Room> out) throws IOException {
+            MappedByteBuffer buf = map(file);
+            String[] types = readHeader(buf, ROOMS_MAGIC);
+            int count = buf.getInt(12);
+            for (int i = 0; i < count; i++) {
+                int num = buf.getInt();
+                int type = buf.getInt();
+                double price = buf.getDouble();
+                out.add(new Room(num, types[type], price));
+            }
+        }
+
+        static void writeRooms(Path file, List<Room> list) throws IOException {
+            Map<String,Integer> ids = new HashMap<>();
+            List<String> types = new ArrayList<>();
+            for (Room r : list) if (!ids.containsKey(r.type)) { ids.put(r.type, types.size()); types.add(r.type); }
+            Path tmp = tempSibling(file);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                writeHeader(out, ROOMS_MAGIC, types, list.size());
+                for (Room r : list) {
+                    out.writeInt(r.number);
+                    out.writeInt(ids.get(r.type));
+                    out.writeDouble(r.price);
+                }
+            }
+            moveIntoPlace(tmp, file);
+        }
+
+        private static MappedByteBuffer map(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // mapping stays valid after close
+            }
+        }
+
+        // Leaves the buffer positioned at the first record.
+        private static String[] readHeader(ByteBuffer buf, int magic) throws IOException {
+            if (buf.getInt() != magic) throw new IOException("Not a snapshot file (bad magic)");
+            int version = buf.getInt();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported snapshot version " + version);
+            String[] strings = new String[buf.getInt()];
+            buf.getInt(); // record count, read by the caller
+            byte[] tmp = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int len = buf.getShort() & 0xffff;
+                if (len > tmp.length) tmp = new byte[len];
+                buf.get(tmp, 0, len);
+                strings[i] = new String(tmp, 0, len, StandardCharsets.UTF_8);
+            }
+            return strings;
+        }
+
+        private static void writeHeader(DataOutputStream out, int magic, List<String> strings, int records) throws IOException {
+            out.writeInt(magic);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(records);
+            for (String str : strings) {
+                byte[] b = str.getBytes(StandardCharsets.UTF_8);
+                int len = utf8Prefix(b, 0xffff);
+                out.writeShort(len);
+                out.write(b, 0, len);
+            }
+        }
+
+        // Longest prefix of b of at most max bytes that ends on a character boundary, so an over-long
+        // string is cut short rather than left with half a multi-byte character.
+        static int utf8Prefix(byte[] b, int max) {
+            if (b.length <= max) return b.length;
+            int len = max;
+            while (len > 0 && (b[len] & 0xc0) == 0x80) len--;   // back to the lead byte of the character being cut
+            return len;
+        }
+    }
+
+    // ---------- Monthly partitions ----------
+    // bookings/<yyyy-MM>.csv holds the stays checking in that month (same columns as bookings.csv), and
+    // bookings/manifest.csv records per month the stay count, the latest check-out and whether the
+    // segment is archived. Months before the hot window are closed: gzip-compressed (.csv.gz) and not
+    // loaded at startup, unless one of their stays reaches into the window. Anything touching older
+    // dates calls ensureLoaded() first, which pulls in just the segments whose stays overlap the range.
+    // Saves rewrite only the months changed since the last save.
+    static class MonthlyPartitions implements BookingEngine.Listener {
+        static final class Segment {
+            final YearMonth month;
+            int count;
+            long maxCheckOut;   // epoch day
+            boolean archived, loaded;
+            Segment(YearMonth month) { this.month = month; }
+        }
+
+        private final Path dir, manifest;
+        private final int hotMonths;
+        private final TreeMap<YearMonth,Segment> segments = new TreeMap<>();   // guarded by this
+        // One thaw at a time. Thaws restore into the engine, which takes room locks, so they do that holding only
+        // this lock and not the monitor: flush() may run inside a listener that already holds a room's lock.
+        private final Object thawLock = new Object();
+        private final Set<YearMonth> dirty = ConcurrentHashMap.newKeySet();
+        private volatile boolean allDirty;   // set from listeners, which must not take this object's lock
+        // every night on or after this day is in memory
+        private volatile long loadedFromDay = Long.MIN_VALUE;
+
+        MonthlyPartitions(Path dir, int hotMonths) { this.dir = dir; this.hotMonths = hotMonths; this.manifest = dir.resolve("manifest.csv"); }
+
+        @Override public void booked(Booking b) { markDirty(b); }
+        @Override public void cancelled(Booking b) { markDirty(b); }
+        @Override public void roomRemoved(int room, boolean purged) { if (purged) markAllDirty(); }
+
+        void markDirty(Booking b) { dirty.add(YearMonth.from(b.date)); }
+
+        void markAllDirty() { allDirty = true; }
+
+        LocalDate hotFrom() { return YearMonth.now().minusMonths(hotMonths).atDay(1); }
+
+        private Path plain(YearMonth m) { return dir.resolve(m + ".csv"); }
+        private Path gz(YearMonth m) { return dir.resolve(m + ".csv.gz"); }
+
+        // Loads the hot segments into the engine; false when there is no partition directory yet.
+        synchronized boolean open() throws IOException {
+            if (!Files.isDirectory(dir)) return false;
+            segments.clear();
+            if (Files.exists(manifest)) readManifest(); else rebuildManifest();
+            long cutoff = hotFrom().toEpochDay();
+            List<Booking> hot = new ArrayList<>();
+            int loaded = 0;
+            for (Segment s : segments.values()) {
+                if (s.maxCheckOut <= cutoff) continue;
+                read(s, hot);
+                s.loaded = true;
+                loaded++;
+            }
+            engine.replaceBookings(hot);
+            updateWatermark();
+            System.out.println("Loaded " + hot.size() + " bookings from " + loaded + " of " + segments.size() + " monthly segments");
+            return true;
+        }
+
+        // Everything is in memory (migration from a snapshot): every month with stays gets written.
+        synchronized void adoptAll() {
+            for (Booking b : engine.bookings()) markDirty(b);
+            for (Segment s : segments.values()) s.loaded = true;
+            loadedFromDay = Long.MIN_VALUE;
+        }
+
+        void ensureLoaded(LocalDate from, LocalDate to) {
+            if (from.toEpochDay() >= loadedFromDay) return;
+            thaw(from.toEpochDay(), to);
+        }
+
+        private void thaw(long fromDay, LocalDate to) {
+            synchronized (thawLock) {
+                if (fromDay >= loadedFromDay) return;
+                long t0 = Metrics.start();
+                List<Segment> thawed = new ArrayList<>();
+                List<Booking> stays = new ArrayList<>();
+                synchronized (this) {
+                    for (Segment s : segments.values()) {
+                        if (s.loaded || s.maxCheckOut <= fromDay || !s.month.atDay(1).isBefore(to)) continue;
+                        List<Booking> bs = new ArrayList<>();
+                        try { read(s, bs); } catch (IOException e) { Metrics.error(Metrics.Op.PARTITION_THAW, e); continue; }
+                        stays.addAll(bs);
+                        thawed.add(s);
+                    }
+                }
+                engine.restoreAll(stays);
+                synchronized (this) {
+                    for (Segment s : thawed) s.loaded = true;
+                    updateWatermark();
+                }
+                Metrics.stop(Metrics.Op.PARTITION_THAW, t0);
+            }
+        }
+
+        private void updateWatermark() {
+            long w = Long.MIN_VALUE;
+            for (Segment s : segments.values()) if (!s.loaded) w = Math.max(w, s.maxCheckOut);
+            loadedFromDay = w;
+        }
+
+        // Rewrites the changed months, compresses months that have left the hot window, then the manifest.
+        synchronized void flush() throws IOException {
+            Files.createDirectories(dir);
+            if (allDirty) {
+                allDirty = false;
+                for (Segment s : segments.values()) if (s.loaded) dirty.add(s.month);
+            }
+            for (YearMonth m : new ArrayList<>(dirty)) {
+                dirty.remove(m); // a change racing the write marks it again (and is in the journal)
+                writeSegment(m);
+            }
+            YearMonth hot = YearMonth.from(hotFrom());
+            for (Segment s : segments.values()) if (!s.archived && s.month.isBefore(hot)) archive(s);
+            updateWatermark();
+            writeManifest();
+        }
+
+        // Only reads the engine (lock-free), so it is safe under the monitor.
+        private void writeSegment(YearMonth m) throws IOException {
+            NavigableMap<Long,Booking> inMemory = engine.bookingsByKey().subMap(
+                    BookingEngine.key(m.atDay(1), 0), true, BookingEngine.key(m.plusMonths(1).atDay(1), 0), false);
+            Collection<Booking> stays = inMemory.values();
+            Segment s = segments.computeIfAbsent(m, Segment::new);
+            if (!s.loaded && s.count > 0) {
+                // A stay was added to a month that is still on disk (it overlaps none of the month's stays, or the
+                // month would have been loaded first): write the stored stays back with it. A month being thawed
+                // right now has some stays in both places; the key keeps one of each.
+                TreeMap<Long,Booking> all = new TreeMap<>();
+                List<Booking> onDisk = new ArrayList<>();
+                read(s, onDisk);
+                for (Booking b : onDisk) all.put(BookingEngine.key(b.date, b.roomNumber), b);
+                all.putAll(inMemory);
+                stays = all.values();
+            } else s.loaded = true;
+            s.archived = m.isBefore(YearMonth.from(hotFrom()));
+            Path target = s.archived ? gz(m) : plain(m), tmp = tempSibling(target);
+            int count = 0;
+            long maxOut = Long.MIN_VALUE;
+            try (BufferedWriter w = segmentWriter(tmp, s.archived)) {
+                for (Booking b : stays) {
+                    w.write(formatBooking(b));
+                    w.newLine();
+                    count++;
+                    maxOut = Math.max(maxOut, b.checkOut.toEpochDay());
+                }
+            }
+            if (count == 0) {
+                Files.delete(tmp);
+                segments.remove(m);
+                Files.deleteIfExists(target);
+            } else {
+                moveIntoPlace(tmp, target);
+                s.count = count;
+                s.maxCheckOut = maxOut;
+            }
+            // a copy in the other format (the month just got archived) goes only once the new one is in place
+            Files.deleteIfExists(s.archived ? plain(m) : gz(m));
+        }
+
+        // A closed month's plain segment is already current, so archiving is a straight compress.
+        private void archive(Segment s) throws IOException {
+            Path tmp = tempSibling(gz(s.month));
+            try (InputStream in = Files.newInputStream(plain(s.month));
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                in.transferTo(out);
+            }
+            moveIntoPlace(tmp, gz(s.month));
+            Files.delete(plain(s.month));
+            s.archived = true;
+        }
+
+        private static BufferedWriter segmentWriter(Path p, boolean gzip) throws IOException {
+            OutputStream out = Files.newOutputStream(p);
+            if (gzip) out = new GZIPOutputStream(out, 1 << 16);
+            return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        private void read(Segment s, List<Booking> out) throws IOException {
+            Path p = s.archived ? gz(s.month) : plain(s.month);
+            InputStream in = Files.newInputStream(p);
+            if (s.archived) in = new GZIPInputStream(in, 1 << 16);
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+                for (String ln; (ln = r.readLine()) != null; ) if (!ln.isEmpty()) out.add(parseBookingFields(ln.split(",", -1), 0));
+            }
+        }
+
+        private void readManifest() throws IOException {
+            for (String ln : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] p = ln.split(",");
+                if (p.length < 4) continue;
+                Segment s = new Segment(YearMonth.parse(p[0]));
+                s.count = Integer.parseInt(p[1]);
+                s.maxCheckOut = LocalDate.parse(p[2], DATE_FMT).toEpochDay();
+                s.archived = p[3].equals("1");
+                segments.put(s.month, s);
+            }
+        }
+
+        // No manifest (e.g. deleted by hand): one pass over the segment files.
+        private void rebuildManifest() throws IOException {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.csv*")) {
+                for (Path f : files) {
+                    String name = f.getFileName().toString();
+                    if (!name.matches("\\d{4}-\\d{2}\\.csv(\\.gz)?")) continue;
+                    Segment s = new Segment(YearMonth.parse(name.substring(0, 7)));
+                    s.archived = name.endsWith(".gz");
+                    List<Booking> bs = new ArrayList<>();
+                    read(s, bs);
+                    if (bs.isEmpty()) continue;
+                    s.count = bs.size();
+                    s.maxCheckOut = bs.stream().mapToLong(b -> b.checkOut.toEpochDay()).max().orElse(Long.MIN_VALUE);
+                    segments.put(s.month, s);
+                }
+            }
+            writeManifest();
+        }
+
+        private void writeManifest() throws IOException {
+            List<String> lines = new ArrayList<>();
+            for (Segment s : segments.values())
+                lines.add(s.month + "," + s.count + "," + LocalDate.ofEpochDay(s.maxCheckOut).format(DATE_FMT) + "," + (s.archived ? 1 : 0));
+            Path tmp = tempSibling(manifest);
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            moveIntoPlace(tmp, manifest);
+        }
+    }
+
+    // ---------- Database storage ----------
+    // Rooms and bookings in an embedded H2 database, reached through a JdbcConnectionPool. Every booked night
+    // is also a row of booked_nights, whose primary key is (room, night): the database itself refuses a double
+    // booking, including one made by another process sharing the database (H2's AUTO_SERVER or server mode).
+    // New stays are inserted with their nights in one batched transaction before the engine applies them
+    // (BookingEngine.Committer), so a stay is in memory only once it is stored. Cancels and room changes are
+    // single-statement writes through the listener. As with monthly storage, only stays ending inside the
+    // hot window are loaded at startup; older ranges are fetched with an indexed check_out range query when
+    // something reads them. A first start next to file storage copies the files' rooms and bookings in.
+    static class DatabaseStorage implements Storage, BookingEngine.Committer {
+        private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS rooms (number INT PRIMARY KEY, type VARCHAR(200) NOT NULL, price DOUBLE NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS bookings (room INT NOT NULL, check_in DATE NOT NULL, check_out DATE NOT NULL,"
+                + " customer VARCHAR(1000) NOT NULL, amount DOUBLE, PRIMARY KEY (room, check_in))",
+            "CREATE INDEX IF NOT EXISTS bookings_check_out ON bookings (check_out)",
+            "CREATE TABLE IF NOT EXISTS booked_nights (room INT NOT NULL, night DATE NOT NULL, check_in DATE NOT NULL,"
+                + " PRIMARY KEY (room, night), FOREIGN KEY (room, check_in) REFERENCES bookings (room, check_in) ON DELETE CASCADE)",
+        };
+        private static final String INSERT_BOOKING = "INSERT INTO bookings (room, check_in, check_out, customer, amount) VALUES (?, ?, ?, ?, ?)";
+        private static final String INSERT_NIGHT = "INSERT INTO booked_nights (room, night, check_in) VALUES (?, ?, ?)";
+        private static final String SELECT_BOOKINGS = "SELECT room, check_in, check_out, customer, amount FROM bookings";
+        private static final String DUPLICATE_KEY = "23505";
+        private static final LocalDate FIRST_DAY = LocalDate.of(1, 1, 1);   // bound for "all history" queries
+        private static final int BATCH = 10_000;
+
+        private final String url;
+        private final int poolSize, hotMonths;
+        private JdbcConnectionPool pool;
+        // every night on or after this day is in memory
+        private volatile long loadedFromDay = Long.MIN_VALUE;
+
+        DatabaseStorage(String url, int poolSize, int hotMonths) { this.url = url; this.poolSize = poolSize; this.hotMonths = hotMonths; }
+
+        interface SqlWork<T> { T run(Connection c) throws SQLException; }
+
+        private <T> T inTransaction(SqlWork<T> work) throws SQLException {
+            try (Connection c = pool.getConnection()) {
+                c.setAutoCommit(false);
+                try { T result = work.run(c); c.commit(); return result; }
+                catch (SQLException | RuntimeException e) { c.rollback(); throw e; }
+                finally { c.setAutoCommit(true); }
+            }
+        }
+
+        @Override public void open() throws Exception {
+            pool = JdbcConnectionPool.create(url, "sa", "");
+            pool.setMaxConnections(poolSize);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> pool.dispose()));
+            inTransaction(c -> {
+                try (Statement st = c.createStatement()) { for (String ddl : SCHEMA) st.execute(ddl); }
+                return null;
+            });
+            engine.setCommitter(this);
+            engine.setLoader(this::ensureLoaded);
+            if (count("rooms") == 0 && count("bookings") == 0) importFiles();
+        }
+
+        private int count(String table) throws SQLException {
+            try (Connection c = pool.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+
+        // Rooms, snapshot and journal of file storage in the data directory, if there are any. The files are left as they are.
+        private void importFiles() throws Exception {
+            FileStorage files = new FileStorage();
+            List<Room> rooms = files.loadRooms();
+            files.loadBookings();
+            if (rooms.isEmpty() && engine.bookingCount() == 0) return;
+            saveRooms(rooms);
+            saveBookings();
+            System.out.println("Copied " + rooms.size() + " rooms and " + engine.bookingCount() + " bookings from " + DATA_DIR + " into " + url);
+        }
+
+        @Override public List<Room> loadRooms() throws SQLException {
+            List<Room> out = new ArrayList<>();
+            try (Connection c = pool.getConnection(); Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT number, type, price FROM rooms ORDER BY number")) {
+                while (rs.next()) out.add(new Room(rs.getInt(1), rs.getString(2), rs.getDouble(3)));
+            }
+            return out;
+        }
+
+        @Override public void saveRooms(List<Room> rooms) throws SQLException {
+            inTransaction(c -> {
+                try (Statement st = c.createStatement(); PreparedStatement ins = c.prepareStatement("INSERT INTO rooms (number, type, price) VALUES (?, ?, ?)")) {
+                    st.executeUpdate("DELETE FROM rooms");
+                    for (Room r : rooms) { bindRoom(ins, r); ins.addBatch(); }
+                    ins.executeBatch();
+                }
+                return null;
+            });
+        }
+
+        // Stays ending inside the hot window; earlier ones are fetched by ensureLoaded().
+        @Override public void loadBookings() throws SQLException {
+            LocalDate hotFrom = YearMonth.now().minusMonths(hotMonths).atDay(1);
+            engine.replaceBookings(query(" WHERE check_out > ?", hotFrom));
+            loadedFromDay = hotFrom.toEpochDay();
+        }
+
+        void ensureLoaded(LocalDate from, LocalDate to) {
+            if (from.toEpochDay() >= loadedFromDay) return;
+            fetch(from.isBefore(FIRST_DAY) ? FIRST_DAY : from);
+        }
+
+        // Everything from `from` up to the watermark, so the loaded part of the history stays one contiguous range.
+        private synchronized void fetch(LocalDate from) {
+            if (from.toEpochDay() >= loadedFromDay) return;
+            long t0 = Metrics.start();
+            try {
+                // one batch, so listeners see a single reloaded() however many stays come back
+                engine.restoreAll(query(" WHERE check_out > ? AND check_out <= ?", from, LocalDate.ofEpochDay(loadedFromDay)));
+                loadedFromDay = from.toEpochDay();
+                Metrics.stop(Metrics.Op.DB_FETCH, t0);
+            } catch (SQLException e) { Metrics.error(Metrics.Op.DB_FETCH, e); }
+        }
+
+        private List<Booking> query(String where, LocalDate... args) throws SQLException {
+            List<Booking> out = new ArrayList<>();
+            try (Connection c = pool.getConnection(); PreparedStatement ps = c.prepareStatement(SELECT_BOOKINGS + where)) {
+                for (int i = 0; i < args.length; i++) ps.setObject(i + 1, args[i]);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Booking b = new Booking(rs.getInt(1), rs.getString(4), rs.getObject(2, LocalDate.class), rs.getObject(3, LocalDate.class));
+                        double amount = rs.getDouble(5);
+                        b.amount = rs.wasNull() ? Double.NaN : amount;
+                        out.add(b);
+                    }
+                }
+            }
+            return out;
+        }
+
+        // Rewrites every stay in one transaction, with no reservation in flight meanwhile (after an import).
+        @Override public void saveBookings() throws SQLException {
+            engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX);
+            SQLException[] failed = new SQLException[1];
+            engine.exclusive(() -> {
+                try {
+                    inTransaction(c -> {
+                        try (Statement st = c.createStatement()) { st.executeUpdate("DELETE FROM bookings"); }
+                        insert(c, engine.bookings());
+                        return null;
+                    });
+                } catch (SQLException e) { failed[0] = e; }
+            });
+            if (failed[0] != null) throw failed[0];
+        }
+
+        // One batched insert for the stays and one for their nights; flushed every BATCH nights.
+        private static void insert(Connection c, Collection<Booking> bs) throws SQLException {
+            try (PreparedStatement stay = c.prepareStatement(INSERT_BOOKING); PreparedStatement night = c.prepareStatement(INSERT_NIGHT)) {
+                int pending = 0;
+                for (Booking b : bs) {
+                    stay.setInt(1, b.roomNumber);
+                    stay.setObject(2, b.date);
+                    stay.setObject(3, b.checkOut);
+                    stay.setString(4, b.customer);
+                    if (Double.isNaN(b.amount)) stay.setNull(5, Types.DOUBLE); else stay.setDouble(5, b.amount);
+                    stay.addBatch();
+                    for (LocalDate d = b.date; d.isBefore(b.checkOut); d = d.plusDays(1)) {
+                        night.setInt(1, b.roomNumber);
+                        night.setObject(2, d);
+                        night.setObject(3, b.date);
+                        night.addBatch();
+                        pending++;
+                    }
+                    if (pending >= BATCH) { stay.executeBatch(); night.executeBatch(); pending = 0; }
+                }
+                stay.executeBatch();
+                night.executeBatch();
+            }
+        }
+
+        @Override public String commit(List<Booking> bs) {
+            long t0 = Metrics.start();
+            try {
+                inTransaction(c -> { insert(c, bs); return null; });
+                Metrics.stop(Metrics.Op.DB_WRITE, t0);
+                return null;
+            } catch (SQLException e) {
+                if (isDuplicateKey(e)) { Metrics.stop(Metrics.Op.DB_WRITE, t0); return "room already booked for these dates"; }
+                Metrics.error(Metrics.Op.DB_WRITE, e);
+                return "could not be saved: " + e.getMessage();
+            }
+        }
+
+        // Batch failures may carry the constraint violation further down the chain.
+        private static boolean isDuplicateKey(SQLException e) {
+            for (SQLException x = e; x != null; x = x.getNextException()) {
+                if (DUPLICATE_KEY.equals(x.getSQLState())) return true;
+                if (x.getCause() instanceof SQLException && DUPLICATE_KEY.equals(((SQLException) x.getCause()).getSQLState())) return true;
+            }
+            return false;
+        }
+
+        private static void bindRoom(PreparedStatement ps, Room r) throws SQLException {
+            ps.setInt(1, r.number);
+            ps.setString(2, r.type);
+            ps.setDouble(3, r.price);
+        }
+
+        private void update(Metrics.Op op, String sql, int key, LocalDate date) {
+            long t0 = Metrics.start();
+            try (Connection c = pool.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setInt(1, key);
+                if (date != null) ps.setObject(2, date);
+                ps.executeUpdate();
+                Metrics.stop(op, t0);
+            } catch (SQLException e) { Metrics.error(op, e); }
+        }
+
+        // New stays were stored by commit(); the rest are single statements (the nights go with their stay).
+        @Override public BookingEngine.Listener listener() {
+            return new BookingEngine.Listener() {
+                @Override public void cancelled(Booking b) { update(Metrics.Op.DB_WRITE, "DELETE FROM bookings WHERE room = ? AND check_in = ?", b.roomNumber, b.date); }
+                @Override public void roomAdded(Room r) {
+                    long t0 = Metrics.start();
+                    try (Connection c = pool.getConnection(); PreparedStatement ps = c.prepareStatement("MERGE INTO rooms (number, type, price) KEY (number) VALUES (?, ?, ?)")) {
+                        bindRoom(ps, r);
+                        ps.executeUpdate();
+                        Metrics.stop(Metrics.Op.SAVE_ROOMS, t0);
+                    } catch (SQLException e) { Metrics.error(Metrics.Op.SAVE_ROOMS, e); }
+                }
+                @Override public void roomRemoved(int room, boolean purgedBookings) {
+                    update(Metrics.Op.SAVE_ROOMS, "DELETE FROM rooms WHERE number = ?", room, null);
+                    if (purgedBookings) update(Metrics.Op.DB_WRITE, "DELETE FROM bookings WHERE room = ?", room, null);
+                }
+            };
+        }
+    }
+
+    // ---------- Booking journal ----------
+    // Single-change persistence: append to the journal when it is open, otherwise fall back to a full rewrite.
+    private static void recordBooking(Booking b) { record("+," + formatBooking(b)); }
+    // A group is framed by a "g,<count>" header and written (and fsynced) as one append; replay
+    // skips a group whose records did not all reach the disk, so a group is never half-restored.
+    private static void recordGroup(List<Booking> bs) {
+        StringBuilder sb = new StringBuilder("g,").append(bs.size());
+        for (Booking b : bs) sb.append("\n+,").append(formatBooking(b));
+        record(sb.toString());
+    }
+    private static void recordCancel(int room, LocalDate d) { record("-," + room + "," + d.format(DATE_FMT)); }
+    private static void recordRoomPurge(int room) { record("x," + room); }
+    // With live sync the other instances learn about room changes from the journal too (rooms.csv is rewritten
+    // whole, so it cannot carry concurrent changes); otherwise the room file is enough.
+    private static void recordRoomAdded(Room r) { if (sync != null) record("r+," + r.number + "," + r.type + "," + r.price); }
+    private static void recordRoomRemoved(int room) { if (sync != null) record("r-," + room); }
+
+    private static void record(String journalRecord) {
+        if (journal == null) { saveBookings(); return; }
+        if (sync != null) journalRecord = LiveSync.tag(journalRecord);
+        long t0 = Metrics.start();
+        try { journal.append(journalRecord); Metrics.stop(Metrics.Op.JOURNAL_APPEND, t0); }
+        catch (Exception e) { Metrics.error(Metrics.Op.JOURNAL_APPEND, e); saveBookings(); }
+    }
+
+    // Persists every engine change through the configured storage (changes applied by live sync are on disk already).
+    private static void attachPersistence() { engine.addListener(sync != null ? LiveSync.localOnly(storage.listener()) : storage.listener()); }
+
+    private static void openJournal() {
+        try {
+            // a rotated journal left by an interrupted compaction has been replayed by loadBookings(); fold it in now
+            if (Files.exists(BOOKINGS_JOURNAL_OLD)) exclusively(() -> {
+                persistBookings();
+                Files.delete(BOOKINGS_JOURNAL_OLD);
+                Files.deleteIfExists(BOOKINGS_JOURNAL);
+                journalReplayedTo = 0;
+            });
+            journal = new BookingJournal(BOOKINGS_JOURNAL);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> journal.close()));
+            ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-compaction");
+                t.setDaemon(true);
+                return t;
+            });
+            compactor.scheduleWithFixedDelay(() -> {
+                try { if (journal.size() >= COMPACT_THRESHOLD_BYTES) compactJournal(); }
+                catch (Exception e) { Metrics.error(Metrics.Op.SAVE_BOOKINGS, e); }
+            }, COMPACT_CHECK_MS, COMPACT_CHECK_MS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) { Metrics.error(Metrics.Op.JOURNAL_APPEND, e); journal = null; }
+    }
+
+    // Folds the journal into a fresh snapshot. The journal is rotated *before* the bookings are copied,
+    // so every change is either in the copy or in the new live journal (replaying one that is in both is
+    // harmless). Safe to run from any thread while bookings keep coming in. With live sync it waits until
+    // this is the only instance attached; until then the journal simply stays the complete record.
+    private static synchronized void compactJournal() throws IOException {
+        exclusively(() -> {
+            journal.rotateTo(BOOKINGS_JOURNAL_OLD);
+            persistBookings();
+            if (sync != null) saveRooms(); // room changes from other instances were only journaled here
+            Files.deleteIfExists(BOOKINGS_JOURNAL_OLD);
+        });
+    }
+
+    // Runs work that swaps the shared journal: always without live sync, otherwise only while no other instance is attached.
+    private static boolean exclusively(LiveSync.IoAction work) throws IOException {
+        if (sync == null) { work.run(); return true; }
+        return sync.exclusively(work);
+    }
+
+    // Bytes of the live journal replayed at startup; live sync tails it from there.
+    private static long journalReplayedTo = 0;
+
+    // Replay is idempotent: an add overlapping an existing stay of that room is skipped, so a record
+    // that also made it into the snapshot before a crash is applied only once. Returns the bytes consumed.
+    private static long replayJournal(Path file) {
+        try {
+            if (!Files.exists(file)) return 0;
+            byte[] data = Files.readAllBytes(file);
+            return forEachJournalRecord(data, data.length, (op, origin, p, stays) -> {
+                switch (op) {
+                    case "+": replayBooking(p); break;
+                    case "g": replayGroup(stays); break;
+                    case "-": {
+                        int num = Integer.parseInt(p[1].trim());
+                        LocalDate dt = LocalDate.parse(p[2].trim(), DATE_FMT);
+                        engine.cancel(num, dt);
+                        break;
+                    }
+                    case "x": {
+                        int num = Integer.parseInt(p[1].trim());
+                        engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX);
+                        engine.purgeRoomBookings(num);
+                        if (partitions != null) partitions.markAllDirty();
+                        break;
+                    }
+                    case "r+": engine.addRoom(parseRoomFields(p)); break;
+                    case "r-": engine.removeRoom(Integer.parseInt(p[1].trim()), false); break;
+                    default: break;
+                }
+            });
+        } catch (Exception e) { Metrics.error(Metrics.Op.LOAD_BOOKINGS, e); return 0; }
+    }
+
+    // One journal record: its op and fields, the writing instance (live sync, else null) and, for a group, its stays.
+    interface JournalRecordHandler { void apply(String op, String origin, String[] p, List<String[]> stays) throws Exception; }
+
+    // Hands each complete record in data[0, end) to h and returns the offset just past the last one. A record
+    // without its newline, or a group whose stays are not all there, is torn (by a crash, or another instance
+    // is still writing it) and is neither applied nor consumed.
+    static int forEachJournalRecord(byte[] data, int end, JournalRecordHandler h) {
+        int pos = 0;
+        while (true) {
+            int nl = nextLine(data, pos, end);
+            if (nl < 0) return pos;
+            String ln = new String(data, pos, nl - pos, StandardCharsets.UTF_8);
+            int next = nl + 1;
+            if (!ln.isEmpty()) {
+                String[] p = ln.split(",", -1);
+                int at = p[0].indexOf('@');
+                String op = at < 0 ? p[0] : p[0].substring(0, at);
+                List<String[]> stays = Collections.emptyList();
+                try {
+                    if (op.equals("g")) {
+                        int n = Integer.parseInt(p[1].trim());
+                        stays = new ArrayList<>(n);
+                        for (int k = 0; k < n; k++) {
+                            int e = nextLine(data, next, end);
+                            if (e < 0) return pos;
+                            stays.add(new String(data, next, e - next, StandardCharsets.UTF_8).split(",", -1));
+                            next = e + 1;
+                        }
+                    }
+                    h.apply(op, at < 0 ? null : p[0].substring(at + 1), p, stays);
+                } catch (Exception e) { System.err.println("Skipping bad journal record: " + ln); }
+            }
+            pos = next;
+        }
+    }
+
+    private static int nextLine(byte[] data, int from, int end) {
+        for (int i = from; i < end; i++) if (data[i] == '\n') return i;
+        return -1;
+    }
+
+    private static Room parseRoomFields(String[] p) {
+        return new Room(Integer.parseInt(p[1].trim()), p[2].trim(), Double.parseDouble(p[3].trim()));
+    }
+
+    private static void replayBooking(String[] p) {
+        if (p.length < 4) return;
+        Booking b = parseBookingFields(p, 1);
+        engine.ensureLoaded(b.date, b.checkOut);
+        if (engine.restore(b) && partitions != null) partitions.markDirty(b);
+    }
+
+    // A group is parsed in full before the engine is touched, so a bad stay skips the whole record,
+    // then goes in as one batch.
+    private static void replayGroup(List<String[]> stays) {
+        List<Booking> group = new ArrayList<>(stays.size());
+        for (String[] st : stays) if (st.length >= 4) group.add(parseBookingFields(st, 1));
+        if (group.isEmpty()) return;
+        LocalDate from = LocalDate.MAX, to = LocalDate.MIN;
+        for (Booking b : group) {
+            if (b.date.isBefore(from)) from = b.date;
+            if (b.checkOut.isAfter(to)) to = b.checkOut;
+        }
+        engine.ensureLoaded(from, to);
+        engine.restoreAll(restore -> {
+            for (Booking b : group) if (restore.test(b) && partitions != null) partitions.markDirty(b);
+        });
+    }
+
+    // Append-only booking journal with group commit: callers block until their record is on disk,
+    // but a single flusher thread writes and fsyncs everything queued since the previous flush,
+    // so concurrent appends share one force().
+    static class BookingJournal {
+        private static final long COMMIT_WINDOW_MS = 2;
+
+        private final Object lock = new Object();   // guards pending/sequence state
+        private final Object ioLock = new Object(); // guards the channel; taken before lock
+        private Path path;
+        private FileChannel ch;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private long appendedSeq = 0, durableSeq = 0;
+        private IOException failure = null;
+        private boolean closed = false;
+        private final Thread flusher;
+
+        BookingJournal(Path path) throws IOException {
+            this.path = path;
+            this.ch = openChannel(path);
+            flusher = new Thread(this::flushLoop, "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+
+        private static FileChannel openChannel(Path p) throws IOException {
+            return FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        void append(String record) throws IOException {
+            byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (lock) {
+                if (closed) throw new IOException("journal closed");
+                if (failure != null) throw failure;
+                pending.write(bytes, 0, bytes.length);
+                long seq = ++appendedSeq;
+                lock.notifyAll();
+                while (durableSeq < seq) {
+                    if (failure != null) throw failure;
+                    try { lock.wait(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); throw new InterruptedIOException(); }
+                }
+            }
+        }
+
+        private void flushLoop() {
+            while (true) {
+                synchronized (lock) {
+                    try {
+                        while (pending.size() == 0 && !closed) lock.wait();
+                        if (closed) return;
+                        lock.wait(COMMIT_WINDOW_MS); // let concurrent appenders join this commit
+                    } catch (InterruptedException e) { return; }
+                }
+                synchronized (ioLock) {
+                    try {
+                        flushPending();
+                    } catch (IOException e) {
+                        synchronized (lock) { failure = e; lock.notifyAll(); }
+                    }
+                }
+            }
+        }
+
+        // Writes and fsyncs everything queued so far; the caller must hold ioLock.
+        private void flushPending() throws IOException {
+            byte[] batch;
+            long seq;
+            synchronized (lock) {
+                batch = pending.toByteArray();
+                pending.reset();
+                seq = appendedSeq;
+            }
+            if (batch.length > 0) {
+                ByteBuffer buf = ByteBuffer.wrap(batch);
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(false);
+            }
+            synchronized (lock) {
+                durableSeq = Math.max(durableSeq, seq);
+                lock.notifyAll();
+            }
+        }
+
+        long size() throws IOException {
+            synchronized (ioLock) { return ch.size(); }
+        }
+
+        // Moves the current journal aside (for compaction) and continues with a fresh, empty one.
+        void rotateTo(Path target) throws IOException {
+            synchronized (ioLock) {
+                flushPending();
+                ch.close();
+                Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+                ch = openChannel(path);
+            }
+        }
+
+        void close() {
+            synchronized (ioLock) {
+                synchronized (lock) {
+                    if (closed) return;
+                    closed = true;
+                    lock.notifyAll();
+                }
+                try { flushPending(); ch.close(); } catch (IOException e) { Metrics.error(Metrics.Op.JOURNAL_APPEND, e); }
+            }
+        }
+    }
+
+    // ---------- Live sync ----------
+    // Several instances (desk terminals, the HTTP server) on one data directory. Each journal record carries
+    // the id of the instance that wrote it ("+@3f9a0c1e,..."); a WatchService on the data directory wakes a
+    // tailer that reads what was appended since its last offset, skips its own records and applies the rest
+    // through the engine. The engine's listeners are the change-event bus: tables, analytics and partitions
+    // update row by row as for a local change, while persistence (localOnly) stays out of it, since the
+    // change is on disk already. Every instance holds a shared lock on sync.lock; swapping the journal
+    // (compaction) takes it exclusively, so it only happens while no other instance is attached, and an
+    // instance starting meanwhile waits for it to finish.
+    static class LiveSync {
+        static final String ID = String.format("%08x", ThreadLocalRandom.current().nextInt());
+        private static final long POLL_MS = 1000;   // also re-read without an event, for watch services that lag
+        private static final ThreadLocal<Boolean> REMOTE = ThreadLocal.withInitial(() -> false);
+
+        interface IoAction { void run() throws IOException; }
+
+        // True on the tailer thread while it applies another instance's records.
+        static boolean applyingRemote() { return REMOTE.get(); }
+
+        private final Path dir, journalFile;
+        private final FileChannel lockChannel;
+        private FileLock shared;            // guarded by this
+        // tailer thread only: the journal file being followed and how much of it has been applied
+        private Object journalKey;
+        private long offset;
+
+        LiveSync(Path dir, Path journalFile) throws IOException {
+            this.dir = dir; this.journalFile = journalFile;
+            Files.createDirectories(dir);
+            lockChannel = FileChannel.open(dir.resolve("sync.lock"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            shared = lockChannel.lock(0, Long.MAX_VALUE, true);
+        }
+
+        // "op,fields" -> "op@id,fields"
+        static String tag(String record) {
+            int c = record.indexOf(',');
+            return record.substring(0, c) + "@" + ID + record.substring(c);
+        }
+
+        static BookingEngine.Listener localOnly(BookingEngine.Listener l) {
+            return new BookingEngine.Listener() {
+                @Override public void booked(Booking b) { if (!REMOTE.get()) l.booked(b); }
+                @Override public void bookedAll(List<Booking> bs) { if (!REMOTE.get()) l.bookedAll(bs); }
+                @Override public void cancelled(Booking b) { if (!REMOTE.get()) l.cancelled(b); }
+                @Override public void roomAdded(Room r) { if (!REMOTE.get()) l.roomAdded(r); }
+                @Override public void roomRemoved(int room, boolean purged) { if (!REMOTE.get()) l.roomRemoved(room, purged); }
+                @Override public void reloaded() { l.reloaded(); }
+            };
+        }
+
+        // Runs work holding the lock exclusively; false (and nothing run) while another instance is attached.
+        synchronized boolean exclusively(IoAction work) throws IOException {
+            shared.release();
+            FileLock excl = null;
+            try {
+                excl = lockChannel.tryLock(0, Long.MAX_VALUE, false);
+                if (excl == null) return false;
+                work.run();
+                return true;
+            } finally {
+                if (excl != null) excl.release();
+                shared = lockChannel.lock(0, Long.MAX_VALUE, true);
+            }
+        }
+
+        // Follows the journal from the given offset (what startup replay consumed).
+        void start(long replayedTo) {
+            offset = replayedTo;
+            journalKey = fileKey();
+            Thread t = new Thread(this::watchLoop, "live-sync");
+            t.setDaemon(true);
+            t.start();
+            System.out.println("Live sync on as instance " + ID);
+        }
+
+        private Object fileKey() {
+            try { return Files.readAttributes(journalFile, java.nio.file.attribute.BasicFileAttributes.class).fileKey(); }
+            catch (IOException e) { return null; }
+        }
+
+        private void watchLoop() {
+            try (WatchService ws = dir.getFileSystem().newWatchService()) {
+                dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                while (true) {
+                    WatchKey key = ws.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    boolean changed = key == null;
+                    if (key != null) {
+                        for (WatchEvent<?> ev : key.pollEvents())
+                            changed |= ev.kind() == StandardWatchEventKinds.OVERFLOW || journalFile.getFileName().equals(ev.context());
+                        key.reset();
+                    }
+                    if (changed) pull();
+                }
+            } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            catch (IOException e) { Metrics.error(Metrics.Op.SYNC_APPLY, e); }
+        }
+
+        // Applies the complete records appended since the last pull.
+        private void pull() {
+            try (FileChannel ch = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+                Object key = fileKey();
+                long size = ch.size();
+                if (!Objects.equals(key, journalKey) || size < offset) { journalKey = key; offset = 0; } // a new journal after compaction
+                if (size <= offset) return;
+                long t0 = Metrics.start();
+                byte[] data = new byte[(int) Math.min(size - offset, 64 << 20)];
+                ByteBuffer buf = ByteBuffer.wrap(data);
+                while (buf.hasRemaining() && ch.read(buf, offset + buf.position()) > 0) {}
+                REMOTE.set(true);
+                try { offset += forEachJournalRecord(data, buf.position(), this::applyRemote); }
+                finally { REMOTE.set(false); }
+                Metrics.stop(Metrics.Op.SYNC_APPLY, t0);
+            } catch (NoSuchFileException e) { /* no journal yet */ }
+            catch (IOException e) { Metrics.error(Metrics.Op.SYNC_APPLY, e); }
+        }
+
+        private void applyRemote(String op, String origin, String[] p, List<String[]> stays) {
+            if (ID.equals(origin)) return;
+            switch (op) {
+                case "+": applyStay(p); break;
+                case "g": applyGroup(stays); break;
+                case "-": engine.cancel(Integer.parseInt(p[1].trim()), LocalDate.parse(p[2].trim(), DATE_FMT)); break;
+                case "x": {
+                    int num = Integer.parseInt(p[1].trim());
+                    if (engine.room(num) != null) engine.removeRoom(num, true);
+                    else { engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX); engine.purgeRoomBookings(num); }
+                    break;
+                }
+                case "r+": { Room r = parseRoomFields(p); if (engine.room(r.number) == null) engine.addRoom(r); break; }
+                case "r-": { int num = Integer.parseInt(p[1].trim()); if (engine.room(num) != null) engine.removeRoom(num, false); break; }
+                default: break;
+            }
+        }
+
+        // Booked through the engine so every listener sees it. Both terminals accepting overlapping stays at
+        // the same moment is the one conflict this cannot settle: the later one is reported and left out here.
+        private static void applyStay(String[] p) {
+            Booking b = parseBookingFields(p, 1);
+            String why = engine.reserve(b);
+            if ("unknown room".equals(why)) why = engine.restore(b) ? null : "room already booked for these dates";
+            if (why != null) {
+                Metrics.Op.SYNC_APPLY.rejected.incrementAndGet();
+                System.err.println("Live sync: stay from another instance not applied (" + why + "): " + formatBooking(b));
+            }
+        }
+
+        // A group goes in whole or not at all, as it was reserved on the other terminal. Every stay is parsed
+        // before the engine is touched; when the only objection is rooms this instance does not know, the group
+        // is restored as one batch instead, with the free nights rechecked and applied while nothing else runs.
+        private static void applyGroup(List<String[]> stays) {
+            List<Booking> group = new ArrayList<>(stays.size());
+            for (String[] st : stays) group.add(parseBookingFields(st, 1));
+            String[] why = engine.reserveAll(group);
+            if (why != null && Arrays.stream(why).allMatch(w -> w == null || "unknown room".equals(w))) {
+                boolean[] applied = new boolean[1];
+                engine.exclusive(() -> {
+                    for (Booking b : group) if (!engine.isFree(b.roomNumber, b.date, b.checkOut)) return;
+                    engine.restoreAll(group);
+                    applied[0] = true;
+                });
+                if (applied[0]) return;
+                Arrays.fill(why, "room already booked for these dates");
+            }
+            if (why != null) {
+                Metrics.Op.SYNC_APPLY.rejected.incrementAndGet();
+                Set<String> reasons = new LinkedHashSet<>();
+                for (String w : why) if (w != null) reasons.add(w);
+                System.err.println("Live sync: group of " + group.size() + " stays from another instance not applied ("
+                        + String.join("; ", reasons) + "): " + formatBooking(group.get(0)) + (group.size() > 1 ? " ..." : ""));
+            }
+        }
+    }
+
+    // ---------- Table models ----------
+    // All table models are only touched on the EDT. Updates fire row-level events so JTable repaints
+    // just the affected rows instead of rebuilding the whole view.
+    abstract static class RowTableModel<T> extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final String[] cols;
+        protected final List<T> rows = new ArrayList<>();
+
+        RowTableModel(String... cols) { this.cols = cols; }
+
+        abstract Object value(T row, int col);
+
+        @Override public int getRowCount() { return rows.size(); }
+        @Override public int getColumnCount() { return cols.length; }
+        @Override public String getColumnName(int c) { return cols[c]; }
+        @Override public Object getValueAt(int r, int c) { return value(rows.get(r), c); }
+
+        T get(int row) { return rows.get(row); }
+
+        // Replaces all rows. When the row count is unchanged only the rows that differ are reported.
+        void setAll(List<T> next) {
+            if (next.size() != rows.size()) {
+                rows.clear(); rows.addAll(next);
+                fireTableDataChanged();
+                return;
+            }
+            for (int i = 0; i < next.size(); i++) {
+                if (!Objects.equals(rows.get(i), next.get(i))) { rows.set(i, next.get(i)); fireTableRowsUpdated(i, i); }
+            }
+        }
+
+        void insertAt(int i, T row) { rows.add(i, row); fireTableRowsInserted(i, i); }
+        void append(List<T> more) {
+            if (more.isEmpty()) return;
+            rows.addAll(more);
+            fireTableRowsInserted(rows.size() - more.size(), rows.size() - 1);
+        }
+        void clear() {
+            if (rows.isEmpty()) return;
+            int n = rows.size();
+            rows.clear();
+            fireTableRowsDeleted(0, n - 1);
+        }
+        void setAt(int i, T row) { rows.set(i, row); fireTableRowsUpdated(i, i); }
+        void removeAt(int i) { rows.remove(i); fireTableRowsDeleted(i, i); }
+    }
+
+    static class RoomsTableModel extends RowTableModel<Room> {
+        private static final long serialVersionUID = 1L;
+        // rooms shown while a search is active; engine events for rooms outside it are dropped
+        private Predicate<Room> filter = r -> true;
+
+        RoomsTableModel() { super("Room#", "Type", "Price"); }
+
+        void setAll(List<Room> rs, Predicate<Room> filter) { this.filter = filter; setAll(rs); }
+
+        @Override Object value(Room r, int c) { return c == 0 ? (Object) r.number : c == 1 ? r.type : (Object) r.price; }
+        @Override public Class<?> getColumnClass(int c) { return c == 0 ? Integer.class : c == 1 ? String.class : Double.class; }
+
+        // rows are kept sorted by room number
+        private int indexOf(int number) {
+            int lo = 0, hi = rows.size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1, n = rows.get(mid).number;
+                if (n < number) lo = mid + 1; else if (n > number) hi = mid - 1; else return mid;
+            }
+            return -(lo + 1);
+        }
+
+        void upsert(Room r) {
+            int i = indexOf(r.number);
+            if (!filter.test(r)) { if (i >= 0) removeAt(i); return; }
+            if (i >= 0) setAt(i, r); else insertAt(-i - 1, r);
+        }
+
+        void remove(int number) {
+            int i = indexOf(number);
+            if (i >= 0) removeAt(i);
+        }
+    }
+
+    static class AvailRow {
+        final Room room; final boolean booked; final double quote;
+        AvailRow(Room room, boolean booked, double quote) { this.room = room; this.booked = booked; this.quote = quote; }
+        @Override public boolean equals(Object o) {
+            return o instanceof AvailRow && ((AvailRow) o).room == room && ((AvailRow) o).booked == booked && ((AvailRow) o).quote == quote;
+        }
+        @Override public int hashCode() { return room.number * 2 + (booked ? 1 : 0); }
+    }
+
+    static class AvailabilityTableModel extends RowTableModel<AvailRow> {
+        private static final long serialVersionUID = 1L;
+        private LocalDate from, to;
+
+        AvailabilityTableModel() { super("Room#", "Type", "Price", "Status", "Quote"); }
+
+        @Override Object value(AvailRow r, int c) {
+            switch (c) {
+                case 0: return r.room.number;
+                case 1: return r.room.type;
+                case 2: return r.room.price;
+                case 3: return r.booked ? "Booked" : "Available";
+                default: return r.quote;
+            }
+        }
+
+        // Runs off the EDT: one bitset lookup per date for single nights, a range probe per room otherwise,
+        // and a quote for the whole stay from the pricing tables.
+        static List<AvailRow> query(LocalDate from, LocalDate to) {
+            long t0 = Metrics.start();
+            engine.ensureLoaded(from, to);
+            List<AvailRow> out = new ArrayList<>();
+            boolean oneNight = to.equals(from.plusDays(1));
+            BitSet day = engine.bookedOn(from);
+            Pricing.Quoter q = pricing.quoter(from, to);
+            for (Room r : engine.rooms())
+                out.add(new AvailRow(r, oneNight ? engine.isBooked(day, r.number) : !engine.isFree(r.number, from, to), q.quote(r)));
+            Metrics.stop(Metrics.Op.AVAILABILITY, t0);
+            return out;
+        }
+
+        void setAll(List<AvailRow> next, LocalDate from, LocalDate to) {
+            if (!(from.equals(this.from) && to.equals(this.to))) rows.clear(); // new query: full refresh
+            this.from = from; this.to = to;
+            setAll(next);
+        }
+
+        // Re-evaluates after a booking change: the room's status with a lock-free O(log n) probe, and the quote of
+        // every room of its type, since occupancy rules price a stay by the type's occupancy. One quoter shares
+        // that occupancy lookup between the rows.
+        void roomChanged(int room) {
+            if (from == null) return;
+            Room changed = engine.room(room);
+            if (changed == null) return;
+            Pricing.Quoter q = pricing.quoter(from, to);
+            for (int i = 0; i < rows.size(); i++) {
+                AvailRow r = rows.get(i);
+                if (!r.room.type.equalsIgnoreCase(changed.type)) continue;
+                boolean booked = r.room.number == room ? !engine.isFree(room, from, to) : r.booked;
+                AvailRow next = new AvailRow(r.room, booked, q.quote(r.room));
+                if (!next.equals(r)) setAt(i, next);
+            }
+        }
+    }
+
+    // One page of availability search hits; rows arrive in batches while the search runs.
+    static class SearchTableModel extends RowTableModel<AvailabilitySearch.Hit> {
+        private static final long serialVersionUID = 1L;
+        SearchTableModel() { super("Room#", "Type", "Price", "First Check-in", "Last Check-in", "Check-ins", "Quote"); }
+
+        @Override Object value(AvailabilitySearch.Hit h, int c) {
+            switch (c) {
+                case 0: return h.room.number;
+                case 1: return h.room.type;
+                case 2: return h.room.price;
+                case 3: return h.firstIn.format(DATE_FMT);
+                case 4: return h.lastIn.format(DATE_FMT);
+                case 5: return h.checkIns();
+                default: return h.quote;
+            }
+        }
+    }
+
+    static class CalendarRow {
+        final Room room; final List<Booking> stays;
+        CalendarRow(Room room, List<Booking> stays) { this.room = room; this.stays = stays; }
+        @Override public boolean equals(Object o) { return o instanceof CalendarRow && ((CalendarRow) o).room == room && ((CalendarRow) o).stays.equals(stays); }
+        @Override public int hashCode() { return room.number; }
+    }
+
+    static class CalendarTableModel extends RowTableModel<CalendarRow> {
+        private static final long serialVersionUID = 1L;
+        private LocalDate from, to;
+
+        CalendarTableModel() { super("Room#", "Type", "Customer", "Stay"); }
+
+        @Override Object value(CalendarRow r, int c) {
+            switch (c) {
+                case 0: return r.room.number;
+                case 1: return r.room.type;
+                case 2: return r.stays.stream().map(b -> b.customer).collect(Collectors.joining("; "));
+                default: return r.stays.stream().map(b -> b.date.format(DATE_FMT) + " to " + b.checkOut.format(DATE_FMT)).collect(Collectors.joining("; "));
+            }
+        }
+
+        static List<CalendarRow> query(LocalDate from, LocalDate to) {
+            engine.ensureLoaded(from, to);
+            List<CalendarRow> out = new ArrayList<>();
+            for (Room r : engine.rooms()) out.add(new CalendarRow(r, engine.overlapping(r.number, from, to)));
+            return out;
+        }
+
+        void setAll(List<CalendarRow> next, LocalDate from, LocalDate to) {
+            if (!(from.equals(this.from) && to.equals(this.to))) rows.clear();
+            this.from = from; this.to = to;
+            setAll(next);
+        }
+
+        void roomChanged(int room) {
+            if (from == null) return;
+            for (int i = 0; i < rows.size(); i++) {
+                CalendarRow r = rows.get(i);
+                if (r.room.number != room) continue;
+                CalendarRow next = new CalendarRow(r.room, engine.overlapping(room, from, to));
+                if (!next.equals(r)) setAt(i, next);
+                return;
+            }
+        }
+    }
+
+    // Sort and filter for the admin bookings table, evaluated directly against the engine's sorted
+    // indexes: check-in order walks the global check-in map, room order walks each room's stay map.
+    static class BookingQuery {
+        enum Order { CHECK_IN, ROOM }
+
+        final Order order; final boolean descending;
+        final Integer room;             // null = all rooms
+        final LocalDate from, to;       // check-in range, inclusive; null = open
+        final String customer;          // case-insensitive substring; null = any
+
+        BookingQuery(Order order, boolean descending, Integer room, LocalDate from, LocalDate to, String customer) {
+            this.order = order; this.descending = descending; this.room = room; this.from = from; this.to = to;
+            this.customer = customer == null || customer.isEmpty() ? null : customer.toLowerCase();
+        }
+
+        BookingQuery sortedBy(Order o, boolean desc) { return new BookingQuery(o, desc, room, from, to, customer); }
+
+        boolean matches(Booking b) {
+            return (room == null || b.roomNumber == room)
+                    && (from == null || !b.date.isBefore(from)) && (to == null || !b.date.isAfter(to))
+                    && (customer == null || b.customer.toLowerCase().contains(customer));
+        }
+
+        Comparator<Booking> comparator() {
+            Comparator<Booking> c = order == Order.ROOM
+                    ? Comparator.comparingInt((Booking b) -> b.roomNumber).thenComparing(b -> b.date)
+                    : Comparator.comparing((Booking b) -> b.date).thenComparingInt(b -> b.roomNumber);
+            return descending ? c.reversed() : c;
+        }
+
+        // Lazily walks the matching bookings in query order, from 'start' (inclusive) or from the beginning.
+        Iterator<Booking> scan(Booking start) {
+            Iterator<NavigableMap<Long,Booking>> parts;
+            if (room == null && order == Order.CHECK_IN) {
+                NavigableMap<Long,Booking> m = engine.bookingsByKey().subMap(
+                        from == null ? Long.MIN_VALUE : BookingEngine.key(from, 0), true,
+                        to == null ? Long.MAX_VALUE : BookingEngine.key(to.plusDays(1), 0), false);
+                if (descending) m = m.descendingMap();
+                if (start != null) m = m.tailMap(BookingEngine.key(start.date, start.roomNumber), true);
+                parts = Collections.singletonList(m).iterator();
+            } else {
+                // a single room's stays are in the same order under both sorts; rooms deleted without purging
+                // still have stays, and those are listed too
+                List<Integer> rs = new ArrayList<>();
+                if (room != null) rs.add(room); else rs.addAll(new TreeSet<>(engine.bookedRooms()));
+                if (descending) Collections.reverse(rs);
+                if (start != null) rs.removeIf(r -> descending ? r > start.roomNumber : r < start.roomNumber);
+                parts = rs.stream().map(r -> {
+                    NavigableMap<Long,Booking> m = engine.roomStays(r).subMap(
+                            from == null ? Long.MIN_VALUE : from.toEpochDay(), true, to == null ? Long.MAX_VALUE : to.toEpochDay(), true);
+                    if (descending) m = m.descendingMap();
+                    return start != null && r == start.roomNumber ? m.tailMap(start.date.toEpochDay(), true) : m;
+                }).iterator();
+            }
+            // lazy: the walk to the next match (to the end, after the last one) happens only on hasNext()
+            return new Iterator<Booking>() {
+                Iterator<Booking> cur = Collections.emptyIterator();
+                Booking next;
+                boolean ready;
+
+                Booking advance() {
+                    while (true) {
+                        while (cur.hasNext()) { Booking b = cur.next(); if (matches(b)) return b; }
+                        if (!parts.hasNext()) return null;
+                        cur = parts.next().values().iterator();
+                    }
+                }
+
+                @Override public boolean hasNext() {
+                    if (!ready) { next = advance(); ready = true; }
+                    return next != null;
+                }
+                @Override public Booking next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    ready = false;
+                    return next;
+                }
+            };
+        }
+    }
+
+    // Admin bookings as a virtual table: nothing is copied up front. Rows are materialized a page at a
+    // time when JTable asks for them, and only a few pages are kept. The query is walked once off the
+    // EDT (index()) for the row count and a checkpoint (row -> booking) at the start of every page, so
+    // loading a page is a walk of about a page from its checkpoint. That walk runs on the EDT only when
+    // it visits nothing but rows of the table; under a customer filter (which skips rows anywhere in the
+    // history) pages load on a worker and show as blank rows until they arrive. Memory follows the
+    // viewport plus one booking reference per page, not the booking history.
+    static class BookingsTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private static final String[] COLS = {"Room#", "Customer", "Check-in", "Check-out", "Nights", "Amount"};
+        private static final int PAGE = 128, MAX_PAGES = 32, MAX_WALK = 8 * PAGE;
+
+        private BookingQuery query = new BookingQuery(BookingQuery.Order.CHECK_IN, false, null, null, null, null);
+        private int rowCount;
+        private final Map<Integer,Booking[]> pages = new LinkedHashMap<Integer,Booking[]>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Integer,Booking[]> e) { return size() > MAX_PAGES; }
+        };
+        private TreeMap<Integer,Booking> checkpoints = new TreeMap<>();
+        private final Set<Integer> loading = new HashSet<>();
+        private int generation;     // bumped whenever loaded pages go stale, so late background loads are dropped
+
+        @Override public int getRowCount() { return rowCount; }
+        @Override public int getColumnCount() { return COLS.length; }
+        @Override public String getColumnName(int c) { return COLS[c]; }
+
+        @Override public Object getValueAt(int r, int c) {
+            Booking b = get(r);
+            if (b == null) return null;
+            switch (c) {
+                case 0: return b.roomNumber;
+                case 1: return b.customer;
+                case 2: return b.date.format(DATE_FMT);
+                case 3: return b.checkOut.format(DATE_FMT);
+                case 4: return b.nights();
+                default: return formatAmount(b.total(engine.room(b.roomNumber)));
+            }
+        }
+
+        BookingQuery query() { return query; }
+
+        static final class Index {
+            final int count;
+            final TreeMap<Integer,Booking> checkpoints;
+            Index(int count, TreeMap<Integer,Booking> checkpoints) { this.count = count; this.checkpoints = checkpoints; }
+        }
+
+        // One walk over the query, allocating only the checkpoints; run it off the EDT.
+        static Index index(BookingQuery q) {
+            TreeMap<Integer,Booking> cps = new TreeMap<>();
+            int n = 0;
+            for (Iterator<Booking> it = q.scan(null); it.hasNext(); n++) {
+                Booking b = it.next();
+                if (n % PAGE == 0) cps.put(n, b);
+            }
+            return new Index(n, cps);
+        }
+
+        void setQuery(BookingQuery q, Index idx) {
+            query = q; rowCount = idx.count;
+            invalidatePages();
+            checkpoints = idx.checkpoints;
+            fireTableDataChanged();
+        }
+
+        private void invalidatePages() { pages.clear(); loading.clear(); generation++; }
+
+        // Booking shown at the row; null while its page loads in the background, or when the data shrank under the view.
+        Booking get(int row) {
+            int page = row / PAGE;
+            Booking[] pg = pages.get(page);
+            if (pg == null) {
+                Map.Entry<Integer,Booking> cp = checkpoints.floorEntry(page * PAGE);
+                if (query.customer != null || page * PAGE - (cp == null ? 0 : cp.getKey()) > MAX_WALK) { loadInBackground(page, cp); return null; }
+                pages.put(page, pg = load(query, cp, page, rowCount, checkpoints));
+            }
+            int i = row % PAGE;
+            return i < pg.length ? pg[i] : null;
+        }
+
+        private void loadInBackground(int page, Map.Entry<Integer,Booking> cp) {
+            if (!loading.add(page)) return;
+            int gen = generation, count = rowCount;
+            BookingQuery q = query;
+            TreeMap<Integer,Booking> found = new TreeMap<>();
+            new SwingWorker<Booking[], Void>() {
+                @Override protected Booking[] doInBackground() { return load(q, cp, page, count, found); }
+                @Override protected void done() {
+                    if (gen != generation) return;
+                    loading.remove(page);
+                    try { pages.put(page, get()); }
+                    catch (InterruptedException | ExecutionException e) { Metrics.error(Metrics.Op.GUI, e); return; }
+                    checkpoints.putAll(found);
+                    int first = page * PAGE;
+                    if (first < rowCount) fireTableRowsUpdated(first, Math.min(rowCount, first + PAGE) - 1);
+                }
+            }.execute();
+        }
+
+        // The page's bookings, walking from the checkpoint cp (null: the start); checkpoints passed are added to 'found'.
+        private static Booking[] load(BookingQuery q, Map.Entry<Integer,Booking> cp, int page, int count, Map<Integer,Booking> found) {
+            int first = page * PAGE;
+            int row = cp == null ? 0 : cp.getKey();
+            Iterator<Booking> it = q.scan(cp == null ? null : cp.getValue());
+            for (; row < first && it.hasNext(); row++) {
+                Booking b = it.next();
+                if (row % PAGE == 0) found.put(row, b);
+            }
+            List<Booking> out = new ArrayList<>(PAGE);
+            while (out.size() < PAGE && first + out.size() < count && it.hasNext()) out.add(it.next());
+            if (!out.isEmpty()) found.put(first, out.get(0));
+            return out.toArray(new Booking[0]);
+        }
+
+        // Applies one booking change as a single row insert/delete when its row is cheap to locate;
+        // otherwise falls back to a full refresh of the (still virtual) table. Either way the checkpoints
+        // after the change move by one row instead of being dropped.
+        void bookingChanged(Booking b, boolean added) {
+            if (!query.matches(b)) return;
+            int row = rowOf(b);
+            rowCount = Math.max(0, rowCount + (added ? 1 : -1));
+            invalidatePages();
+            Comparator<Booking> cmp = query.comparator();
+            TreeMap<Integer,Booking> shifted = new TreeMap<>();
+            for (Map.Entry<Integer,Booking> e : checkpoints.entrySet()) {
+                if (e.getValue() == b) continue;
+                shifted.put(cmp.compare(e.getValue(), b) < 0 ? e.getKey() : e.getKey() + (added ? 1 : -1), e.getValue());
+            }
+            checkpoints = shifted;
+            if (row < 0) fireTableDataChanged();
+            else if (added) fireTableRowsInserted(row, row); else fireTableRowsDeleted(row, row);
+        }
+
+        // Row of b (just added, or just removed): a walk from the last checkpoint before it, or -1 if that walk is long
+        // (always, under a customer filter, where even a few rows can be far apart).
+        private int rowOf(Booking b) {
+            if (query.customer != null) return -1;
+            Comparator<Booking> cmp = query.comparator();
+            Map.Entry<Integer,Booking> from = null;
+            for (Map.Entry<Integer,Booking> e : checkpoints.entrySet()) {
+                if (e.getValue() == b || cmp.compare(e.getValue(), b) >= 0) break;
+                from = e;
+            }
+            int row = from == null ? 0 : from.getKey();
+            Iterator<Booking> it = query.scan(from == null ? null : from.getValue());
+            for (int walked = 0; it.hasNext(); walked++, row++) {
+                if (walked > MAX_WALK) return -1;
+                Booking x = it.next();
+                if (x == b || cmp.compare(x, b) >= 0) return row;
+            }
+            return row;
+        }
+    }
+
+    // ---------- UI: Login ----------
+    private void showLoginDialog() {
+        JDialog dlg = new JDialog((Frame)null, "Login", true);
+        dlg.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dlg.setLayout(new BorderLayout(10,10));
+
+        JPanel p = new JPanel(new GridLayout(3,2,6,6));
+        p.setBorder(BorderFactory.createEmptyBorder(10,10,0,10));
+        JTextField userF = new JTextField();
+        JPasswordField passF = new JPasswordField();
+        p.add(new JLabel("Username:")); p.add(userF);
+        p.add(new JLabel("Password:")); p.add(passF);
+
+        dlg.add(p, BorderLayout.CENTER);
+
+        JPanel btns = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton loginBtn = new JButton("Login");
+        JButton guestBtn = new JButton("Continue as Guest");
+        btns.add(guestBtn); btns.add(loginBtn);
+        dlg.add(btns, BorderLayout.SOUTH);
+
+        loginBtn.addActionListener(e -> {
+            String u = userF.getText().trim();
+            String pss = new String(passF.getPassword());
+            if (u.equals(ADMIN_USER) && pss.equals(ADMIN_PASS)) {
+                currentUser = new User(u, true);
+                dlg.dispose();
+                buildAndShowMain();
+            } else if (!u.isEmpty()) {
+                currentUser = new User(u, false);
+                dlg.dispose();
+                buildAndShowMain();
+            } else {
+                JOptionPane.showMessageDialog(dlg, "Invalid credentials or username empty.");
+            }
+        });
+
+        guestBtn.addActionListener(e -> {
+            currentUser = new User("Guest", false);
+            dlg.dispose();
+            buildAndShowMain();
+        });
+
+        dlg.pack();
+        dlg.setLocationRelativeTo(null);
+        dlg.setVisible(true);
+    }
+
+    // ---------- Build main application ----------
+    private void buildAndShowMain() {
+        frame = new JFrame("Hotel Reservation — Logged in as: " + currentUser.username + (currentUser.isAdmin ? " (Admin)" : "")
+                + (sync != null ? " — live sync" : ""));
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(1000,700);
+        frame.setLocationRelativeTo(null);
+
+        JTabbedPane tabs = new JTabbedPane();
+
+        // Rooms tab (list rooms)
+        tabs.addTab("Rooms", buildRoomsPanel());
+
+        // Book Room tab
+        tabs.addTab("Book Room", buildBookingPanel());
+
+        // Availability Calendar tab (date-based)
+        tabs.addTab("Availability Calendar", buildAvailabilityPanel());
+
+        // Search tab (free rooms for a length of stay within a date window)
+        tabs.addTab("Search", buildSearchPanel());
+
+        // Admin tab (only for admin)
+        if (currentUser.isAdmin) {
+            tabs.addTab("Admin Panel", buildAdminPanel());
+            tabs.addTab("Dashboard", buildDashboardPanel());
+            tabs.addTab("Diagnostics", buildDiagnosticsPanel());
+        }
+
+        // engine changes (from this window, the HTTP API or an import) are applied to the tables row by row
+        engine.addListener(new BookingEngine.Listener() {
+            @Override public void booked(Booking b) { SwingUtilities.invokeLater(() -> bookingChanged(b, true)); }
+            @Override public void cancelled(Booking b) { SwingUtilities.invokeLater(() -> bookingChanged(b, false)); }
+            @Override public void roomAdded(Room r) { SwingUtilities.invokeLater(() -> { roomsModel.upsert(r); reloadBookingCombo(); }); }
+            @Override public void roomRemoved(int room, boolean purged) {
+                SwingUtilities.invokeLater(() -> {
+                    roomsModel.remove(room);
+                    reloadBookingCombo();
+                    if (purged && bookingsAdminModel != null) reloadBookingsAdmin();
+                });
+            }
+            // bulk changes (import, thawed history, reload) come without per-row events; a burst is one refresh
+            @Override public void reloaded() {
+                if (reloadPending.compareAndSet(false, true)) SwingUtilities.invokeLater(() -> { reloadPending.set(false); reloadShownData(); });
+            }
+        });
+
+        frame.add(tabs);
+        frame.setVisible(true);
+    }
+
+    // Re-queries what the tables currently show.
+    private void reloadShownData() {
+        reloadBookingCombo();
+        refreshAvailability();
+        LocalDate from = calModel.from, to = calModel.to;
+        if (from != null) runInBackground("Calendar", () -> CalendarTableModel.query(from, to), rows -> calModel.setAll(rows, from, to));
+        if (bookingsAdminModel != null) applyAdminQuery(bookingsAdminModel.query());
+    }
+
+    private void bookingChanged(Booking b, boolean added) {
+        if (bookingsAdminModel != null) {
+            bookingsAdminModel.bookingChanged(b, added);
+            int n = bookingsAdminModel.getRowCount();
+            adminCountLabel.setText(n + (n == 1 ? " booking" : " bookings"));
+        }
+        availModel.roomChanged(b.roomNumber);
+        calModel.roomChanged(b.roomNumber);
+    }
+
+    // Runs work off the EDT and hands its result to onDone on the EDT; failures are reported in a dialog.
+    private <T> void runInBackground(String what, Callable<T> work, Consumer<T> onDone) {
+        new SwingWorker<T, Void>() {
+            @Override protected T doInBackground() throws Exception { return work.call(); }
+            @Override protected void done() {
+                try { onDone.accept(get()); }
+                catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(frame, what + " failed: " + ex.getCause().getMessage());
+                    Metrics.error(Metrics.Op.GUI, ex.getCause());
+                } catch (InterruptedException ex) { Thread.currentThread().interrupt(); }
+            }
+        }.execute();
+    }
+
+    private static LocalDate toLocalDate(JSpinner spinner) {
+        Date d = (Date) spinner.getValue();
+        return Instant.ofEpochMilli(d.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    // ---------- Rooms panel ----------
+    private JPanel buildRoomsPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        roomsModel = new RoomsTableModel();
+        roomsTable = new JTable(roomsModel);
+        reloadRoomsModel();
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        top.add(new JLabel("Room #:"));
+        roomNumberField = new JTextField(6);
+        top.add(roomNumberField);
+        top.add(new JLabel("Type:"));
+        roomTypeField = new JTextField(8);
+        top.add(roomTypeField);
+        top.add(new JLabel("Price:"));
+        roomPriceField = new JTextField(6);
+        top.add(roomPriceField);
+
+        JButton addRoomBtn = new JButton("Add Room");
+        JButton deleteRoomBtn = new JButton("Delete Selected");
+        JButton saveRoomsBtn = new JButton("Save Rooms");
+        top.add(addRoomBtn); top.add(deleteRoomBtn); top.add(saveRoomsBtn);
+
+        // search runs on the catalog's type / price indexes
+        JPanel search = new JPanel(new FlowLayout(FlowLayout.LEFT,8,4));
+        search.add(new JLabel("Search type:"));
+        searchRoomField = new JTextField(8);
+        search.add(searchRoomField);
+        search.add(new JLabel("Price from:"));
+        searchMinPriceField = new JTextField(6);
+        search.add(searchMinPriceField);
+        search.add(new JLabel("to:"));
+        searchMaxPriceField = new JTextField(6);
+        search.add(searchMaxPriceField);
+        JButton searchBtn = new JButton("Search");
+        JButton showAllBtn = new JButton("Show All");
+        search.add(searchBtn); search.add(showAllBtn);
+
+        JPanel north = new JPanel(new GridLayout(2,1));
+        north.add(top); north.add(search);
+        p.add(north, BorderLayout.NORTH);
+        p.add(new JScrollPane(roomsTable), BorderLayout.CENTER);
+
+        searchBtn.addActionListener(e -> reloadRoomsModel());
+        searchRoomField.addActionListener(e -> reloadRoomsModel());
+        showAllBtn.addActionListener(e -> {
+            searchRoomField.setText(""); searchMinPriceField.setText(""); searchMaxPriceField.setText("");
+            reloadRoomsModel();
+        });
+
+        addRoomBtn.addActionListener(e -> {
+            Room room;
+            try {
+                int num = Integer.parseInt(roomNumberField.getText().trim());
+                String type = roomTypeField.getText().trim();
+                double price = Double.parseDouble(roomPriceField.getText().trim());
+                if (type.isEmpty()) { JOptionPane.showMessageDialog(frame,"Type required"); return; }
+                room = new Room(num,type,price);
+            } catch (Exception ex) { JOptionPane.showMessageDialog(frame,"Invalid input: " + ex.getMessage()); return; }
+            runInBackground("Add room", () -> engine.addRoom(room), added -> {
+                if (!added) { JOptionPane.showMessageDialog(frame,"Room already exists"); return; }
+                roomNumberField.setText(""); roomTypeField.setText(""); roomPriceField.setText("");
+            });
+        });
+
+        deleteRoomBtn.addActionListener(e -> {
+            int r = roomsTable.getSelectedRow();
+            if (r == -1) return;
+            int modelRow = roomsTable.convertRowIndexToModel(r);
+            int roomNum = roomsModel.get(modelRow).number;
+            // remove any bookings for that room? ask admin
+            int yn = JOptionPane.showConfirmDialog(frame,"Also remove any bookings for this room?","Confirm",JOptionPane.YES_NO_CANCEL_OPTION);
+            if (yn == JOptionPane.CANCEL_OPTION) return;
+            runInBackground("Delete room", () -> { engine.removeRoom(roomNum, yn == JOptionPane.YES_OPTION); return null; }, v -> {});
+        });
+
+        saveRoomsBtn.addActionListener(e -> runInBackground("Save rooms", () -> { saveRooms(); return null; },
+                v -> JOptionPane.showMessageDialog(frame,"Rooms saved.")));
+
+        return p;
+    }
+
+    // All rooms, or the current search when any search field is filled in.
+    private void reloadRoomsModel() {
+        String type = searchRoomField == null ? "" : searchRoomField.getText().trim();
+        double min, max;
+        try {
+            min = searchMinPriceField == null || searchMinPriceField.getText().trim().isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(searchMinPriceField.getText().trim());
+            max = searchMaxPriceField == null || searchMaxPriceField.getText().trim().isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(searchMaxPriceField.getText().trim());
+        } catch (NumberFormatException ex) { JOptionPane.showMessageDialog(frame,"Invalid price: " + ex.getMessage()); return; }
+        String t = type.isEmpty() ? null : type;
+        Predicate<Room> filter = r -> (t == null || r.type.equalsIgnoreCase(t)) && r.price >= min && r.price <= max;
+        runInBackground("Load rooms", () -> engine.searchRooms(t, min, max), rs -> { roomsModel.setAll(rs, filter); reloadBookingCombo(); });
+    }
+
+    // ---------- Booking panel ----------
+    private JPanel buildBookingPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        top.add(new JLabel("Customer Name:"));
+        customerNameField = new JTextField(16);
+        installCustomerAutocomplete(customerNameField);
+        top.add(customerNameField);
+        JButton historyBtn = new JButton("History");
+        top.add(historyBtn);
+
+        top.add(new JLabel("Date:"));
+        bookDateSpinner = new JSpinner(new SpinnerDateModel(new Date(), null, null, Calendar.DAY_OF_MONTH));
+        JSpinner.DateEditor de = new JSpinner.DateEditor(bookDateSpinner, "yyyy-MM-dd");
+        bookDateSpinner.setEditor(de);
+        top.add(bookDateSpinner);
+
+        top.add(new JLabel("Nights:"));
+        bookNightsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, MAX_NIGHTS, 1));
+        top.add(bookNightsSpinner);
+
+        top.add(new JLabel("Room:"));
+        bookRoomCombo = new JComboBox<>();
+        bookRoomCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected, boolean focus) {
+                Room r = (Room) value;
+                return super.getListCellRendererComponent(list, r == null ? "" : r.number + " - " + r.type, index, selected, focus);
+            }
+        });
+        reloadBookingCombo();
+        top.add(bookRoomCombo);
+
+        JButton checkBtn = new JButton("Check Availability");
+        JButton bookBtn = new JButton("Book Room");
+        JButton groupBtn = new JButton("Group Booking...");
+        top.add(checkBtn); top.add(bookBtn); top.add(groupBtn);
+
+        p.add(top, BorderLayout.NORTH);
+
+        // availability table
+        availModel = new AvailabilityTableModel();
+        availTable = new JTable(availModel);
+        p.add(new JScrollPane(availTable), BorderLayout.CENTER);
+
+        checkBtn.addActionListener(e -> refreshAvailability());
+        bookBtn.addActionListener(e -> doBook());
+        groupBtn.addActionListener(e -> showGroupBookingDialog());
+        historyBtn.addActionListener(e -> showCustomerHistory(customerNameField.getText().trim()));
+
+        return p;
+    }
+
+    // Type-ahead from the customer directory. A lookup is a skip-list range read of a few entries,
+    // cheap enough to run on the EDT for every keystroke.
+    private void installCustomerAutocomplete(JTextField field) {
+        DefaultListModel<String> items = new DefaultListModel<>();
+        JList<String> list = new JList<>(items);
+        list.setFocusable(false);
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+        boolean[] accepting = {false};
+
+        Runnable accept = () -> {
+            String v = list.getSelectedValue();
+            if (v == null) return;
+            accepting[0] = true;
+            field.setText(v);
+            accepting[0] = false;
+            popup.setVisible(false);
+        };
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void changed() {
+                if (accepting[0]) return;
+                SwingUtilities.invokeLater(() -> {
+                    List<String> names = engine.suggestCustomers(field.getText(), 10);
+                    items.clear();
+                    for (String n : names) items.addElement(n);
+                    if (names.isEmpty() || !field.isShowing() || (names.size() == 1 && names.get(0).equals(field.getText().trim()))) { popup.setVisible(false); return; }
+                    list.setVisibleRowCount(names.size());
+                    popup.pack();
+                    popup.show(field, 0, field.getHeight());
+                });
+            }
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { changed(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { changed(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) {}
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) return;
+                int i = list.getSelectedIndex();
+                if (e.getKeyCode() == KeyEvent.VK_DOWN) { list.setSelectedIndex(Math.min(items.size() - 1, i + 1)); e.consume(); }
+                else if (e.getKeyCode() == KeyEvent.VK_UP) { list.setSelectedIndex(Math.max(0, i - 1)); e.consume(); }
+                else if (e.getKeyCode() == KeyEvent.VK_ENTER && i >= 0) { accept.run(); e.consume(); }
+                else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) popup.setVisible(false);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { list.setSelectedIndex(list.locationToIndex(e.getPoint())); accept.run(); }
+        });
+    }
+
+    // Guest history straight from the customer's posting list.
+    private void showCustomerHistory(String name) {
+        if (name.isEmpty()) { JOptionPane.showMessageDialog(frame,"Enter a customer name."); return; }
+        runInBackground("History", () -> {
+            engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX); // guest history includes archived months
+            return new ArrayList<>(engine.customerHistory(name));
+        }, stays -> {
+            if (stays.isEmpty()) { JOptionPane.showMessageDialog(frame,"No bookings for " + name + "."); return; }
+            RowTableModel<Booking> m = new RowTableModel<Booking>("Room#", "Check-in", "Check-out", "Nights", "Amount") {
+                @Override Object value(Booking b, int c) {
+                    return c == 0 ? (Object) b.roomNumber : c == 1 ? b.date.format(DATE_FMT) : c == 2 ? b.checkOut.format(DATE_FMT)
+                            : c == 3 ? (Object) b.nights() : formatAmount(b.total(engine.room(b.roomNumber)));
+                }
+            };
+            m.setAll(stays);
+            JScrollPane sp = new JScrollPane(new JTable(m));
+            sp.setPreferredSize(new Dimension(500, Math.min(400, 40 + 18 * stays.size())));
+            JOptionPane.showMessageDialog(frame, sp, name + " - " + stays.size() + (stays.size() == 1 ? " stay" : " stays"), JOptionPane.PLAIN_MESSAGE);
+        });
+    }
+
+    // The catalog's sorted view is a snapshot array, so filling the combo needs no copy or sort.
+    private void reloadBookingCombo() {
+        if (bookRoomCombo == null) return;
+        Room sel = (Room) bookRoomCombo.getSelectedItem();
+        bookRoomCombo.removeAllItems();
+        for (Room r : engine.rooms()) {
+            bookRoomCombo.addItem(r);
+            if (sel != null && r.number == sel.number) bookRoomCombo.setSelectedItem(r);
+        }
+    }
+
+    private void refreshAvailability() {
+        LocalDate ld = toLocalDate(bookDateSpinner);
+        LocalDate out = ld.plusDays((int) bookNightsSpinner.getValue());
+        runInBackground("Availability check", () -> AvailabilityTableModel.query(ld, out), rows -> availModel.setAll(rows, ld, out));
+    }
+
+    private void doBook() {
+        String cust = customerNameField.getText().trim();
+        if (cust.isEmpty()) { JOptionPane.showMessageDialog(frame,"Customer name required."); return; }
+        if (bookRoomCombo.getItemCount() == 0) { JOptionPane.showMessageDialog(frame,"No rooms."); return; }
+        int roomNum = ((Room) bookRoomCombo.getSelectedItem()).number;
+        LocalDate ld = toLocalDate(bookDateSpinner);
+        int nights = (int) bookNightsSpinner.getValue();
+        LocalDate out = ld.plusDays(nights);
+        Booking b = new Booking(roomNum,cust,ld,out);
+        runInBackground("Booking", () -> engine.reserve(quoted(b)), refused -> {
+            if (refused != null) { JOptionPane.showMessageDialog(frame,"Cannot book: " + refused + "."); return; }
+            refreshAvailability();
+            JOptionPane.showMessageDialog(frame,"Booked room " + roomNum + " for " + cust + " from " + ld.format(DATE_FMT)
+                    + " to " + out.format(DATE_FMT) + " (" + nights + (nights == 1 ? " night" : " nights") + ", total " + formatAmount(b.amount) + ")");
+            // clear name
+            customerNameField.setText("");
+        });
+    }
+
+    // A block of rooms for one group and stay, reserved in a single all-or-nothing engine call
+    // (one journal write however many rooms).
+    private void showGroupBookingDialog() {
+        JTextField groupField = new JTextField(customerNameField.getText().trim(), 16);
+        JSpinner dateSpinner = new JSpinner(new SpinnerDateModel((Date) bookDateSpinner.getValue(), null, null, Calendar.DAY_OF_MONTH));
+        dateSpinner.setEditor(new JSpinner.DateEditor(dateSpinner, "yyyy-MM-dd"));
+        JSpinner nightsSpinner = new JSpinner(new SpinnerNumberModel((int) bookNightsSpinner.getValue(), 1, MAX_NIGHTS, 1));
+        List<Room> rooms = engine.rooms();
+        JList<Room> roomList = new JList<>(rooms.toArray(new Room[0]));
+        roomList.setCellRenderer(bookRoomCombo.getRenderer());
+        roomList.setVisibleRowCount(14);
+        JButton freeBtn = new JButton("Select All Free");
+        JLabel selLabel = new JLabel("0 rooms selected");
+        roomList.addListSelectionListener(e -> selLabel.setText(roomList.getSelectedIndices().length + " rooms selected"));
+        freeBtn.addActionListener(e -> {
+            LocalDate in = toLocalDate(dateSpinner), out = in.plusDays((int) nightsSpinner.getValue());
+            runInBackground("Availability check", () -> {
+                engine.ensureLoaded(in, out);
+                return IntStream.range(0, rooms.size()).filter(i -> engine.isFree(rooms.get(i).number, in, out)).toArray();
+            }, roomList::setSelectedIndices);
+        });
+
+        JPanel fields = new JPanel(new GridLayout(0, 2, 8, 4));
+        fields.add(new JLabel("Group / guest:")); fields.add(groupField);
+        fields.add(new JLabel("Check-in:")); fields.add(dateSpinner);
+        fields.add(new JLabel("Nights:")); fields.add(nightsSpinner);
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+        bottom.add(freeBtn); bottom.add(selLabel);
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.add(fields, BorderLayout.NORTH);
+        panel.add(new JScrollPane(roomList), BorderLayout.CENTER);
+        panel.add(bottom, BorderLayout.SOUTH);
+
+        if (JOptionPane.showConfirmDialog(frame, panel, "Group Booking", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+        String group = groupField.getText().trim();
+        List<Room> picked = roomList.getSelectedValuesList();
+        if (group.isEmpty()) { JOptionPane.showMessageDialog(frame,"Group name required."); return; }
+        if (picked.isEmpty()) { JOptionPane.showMessageDialog(frame,"Select at least one room."); return; }
+        LocalDate in = toLocalDate(dateSpinner), out = in.plusDays((int) nightsSpinner.getValue());
+        List<Booking> bs = new ArrayList<>();
+        for (Room r : picked) bs.add(new Booking(r.number, group, in, out));
+        runInBackground("Group booking", () -> { bs.forEach(HotelReservationSystem::quoted); return engine.reserveAll(bs); }, refused -> {
+            if (refused != null) {
+                StringBuilder msg = new StringBuilder("Nothing was booked:");
+                int shown = 0;
+                for (int i = 0; i < refused.length && shown < 20; i++)
+                    if (refused[i] != null) { msg.append("\nRoom ").append(bs.get(i).roomNumber).append(": ").append(refused[i]); shown++; }
+                JOptionPane.showMessageDialog(frame, msg.toString());
+                return;
+            }
+            refreshAvailability();
+            double total = 0;
+            for (Booking b : bs) total += b.amount;
+            JOptionPane.showMessageDialog(frame,"Booked " + bs.size() + (bs.size() == 1 ? " room" : " rooms") + " for " + group + " from "
+                    + in.format(DATE_FMT) + " to " + out.format(DATE_FMT) + ", total " + formatAmount(total));
+        });
+    }
+
+    // ---------- Availability panel ----------
+    private JPanel buildAvailabilityPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        top.add(new JLabel("Choose date:"));
+        JSpinner dateSpinner = new JSpinner(new SpinnerDateModel(new Date(), null, null, Calendar.DAY_OF_MONTH));
+        dateSpinner.setEditor(new JSpinner.DateEditor(dateSpinner, "yyyy-MM-dd"));
+        top.add(dateSpinner);
+        top.add(new JLabel("Nights:"));
+        JSpinner nightsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, MAX_NIGHTS, 1));
+        top.add(nightsSpinner);
+        JButton showBtn = new JButton("Show Bookings");
+        top.add(showBtn);
+
+        p.add(top, BorderLayout.NORTH);
+
+        calModel = new CalendarTableModel();
+        JTable calTable = new JTable(calModel);
+        p.add(new JScrollPane(calTable), BorderLayout.CENTER);
+
+        showBtn.addActionListener(e -> {
+            LocalDate ld = toLocalDate(dateSpinner);
+            LocalDate out = ld.plusDays((int) nightsSpinner.getValue());
+            runInBackground("Calendar", () -> CalendarTableModel.query(ld, out), rows -> calModel.setAll(rows, ld, out));
+        });
+
+        return p;
+    }
+
+    // ---------- Search panel ----------
+    private static final int SEARCH_PAGE = 100;
+
+    private JPanel buildSearchPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        JComboBox<String> typeCombo = new JComboBox<>();
+        typeCombo.addItem("Any");
+        for (String t : engine.roomTypes()) typeCombo.addItem(t);
+        JTextField minField = new JTextField(6), maxField = new JTextField(6);
+        JSpinner nightsSpinner = new JSpinner(new SpinnerNumberModel(3, 1, MAX_NIGHTS, 1));
+        JSpinner fromSpinner = new JSpinner(new SpinnerDateModel(new Date(), null, null, Calendar.DAY_OF_MONTH));
+        fromSpinner.setEditor(new JSpinner.DateEditor(fromSpinner, "yyyy-MM-dd"));
+        JSpinner daysSpinner = new JSpinner(new SpinnerNumberModel(60, 1, AvailabilitySearch.MAX_WINDOW, 1));
+        JButton searchBtn = new JButton("Search");
+        top.add(new JLabel("Type:")); top.add(typeCombo);
+        top.add(new JLabel("Price:")); top.add(minField); top.add(new JLabel("to")); top.add(maxField);
+        top.add(new JLabel("Nights:")); top.add(nightsSpinner);
+        top.add(new JLabel("From:")); top.add(fromSpinner);
+        top.add(new JLabel("Days:")); top.add(daysSpinner);
+        top.add(searchBtn);
+        p.add(top, BorderLayout.NORTH);
+
+        searchModel = new SearchTableModel();
+        JTable table = new JTable(searchModel);
+        p.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        JButton prevBtn = new JButton("< Prev"), nextBtn = new JButton("Next >");
+        JLabel status = new JLabel("Double-click a result to book its first check-in.");
+        prevBtn.setEnabled(false); nextBtn.setEnabled(false);
+        bottom.add(prevBtn); bottom.add(nextBtn); bottom.add(status);
+        p.add(bottom, BorderLayout.SOUTH);
+
+        AvailabilitySearch.Criteria[] current = new AvailabilitySearch.Criteria[1];
+        int[] offset = new int[1];
+        Runnable runPage = () -> {
+            AvailabilitySearch.Criteria c = current[0];
+            int off = offset[0];
+            searchModel.clear();
+            prevBtn.setEnabled(false); nextBtn.setEnabled(false); searchBtn.setEnabled(false);
+            status.setText("Searching...");
+            long t0 = System.nanoTime();
+            // hits are published to the table as they are found; the total arrives last
+            new SwingWorker<Integer, AvailabilitySearch.Hit>() {
+                @Override protected Integer doInBackground() { return AvailabilitySearch.search(c, off, SEARCH_PAGE, h -> publish(h)); }
+                @Override protected void process(List<AvailabilitySearch.Hit> hs) { searchModel.append(hs); }
+                @Override protected void done() {
+                    searchBtn.setEnabled(true);
+                    try {
+                        int total = get();
+                        status.setText(total == 0 ? "No rooms free for " + c.nights + " consecutive nights in that window."
+                                : "Results " + (off + 1) + "-" + Math.min(total, off + SEARCH_PAGE) + " of " + total
+                                  + " (" + Metrics.duration(System.nanoTime() - t0) + ")");
+                        prevBtn.setEnabled(off > 0);
+                        nextBtn.setEnabled(off + SEARCH_PAGE < total);
+                    } catch (ExecutionException ex) {
+                        status.setText("Search failed: " + ex.getCause().getMessage());
+                        Metrics.error(Metrics.Op.SEARCH, ex.getCause());
+                    } catch (InterruptedException ex) { Thread.currentThread().interrupt(); }
+                }
+            }.execute();
+        };
+
+        searchBtn.addActionListener(e -> {
+            try {
+                String type = (String) typeCombo.getSelectedItem();
+                double min = minField.getText().trim().isEmpty() ? 0 : Double.parseDouble(minField.getText().trim());
+                double max = maxField.getText().trim().isEmpty() ? Double.MAX_VALUE : Double.parseDouble(maxField.getText().trim());
+                LocalDate from = toLocalDate(fromSpinner);
+                current[0] = new AvailabilitySearch.Criteria("Any".equals(type) ? null : type, min, max,
+                        (int) nightsSpinner.getValue(), from, from.plusDays((int) daysSpinner.getValue()));
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame,"Invalid price.");
+                return;
+            }
+            offset[0] = 0;
+            runPage.run();
+        });
+        prevBtn.addActionListener(e -> { offset[0] = Math.max(0, offset[0] - SEARCH_PAGE); runPage.run(); });
+        nextBtn.addActionListener(e -> { offset[0] += SEARCH_PAGE; runPage.run(); });
+        // room types may have changed since the tab was built
+        typeCombo.addPopupMenuListener(new javax.swing.event.PopupMenuListener() {
+            @Override public void popupMenuWillBecomeVisible(javax.swing.event.PopupMenuEvent e) {
+                Object sel = typeCombo.getSelectedItem();
+                typeCombo.removeAllItems();
+                typeCombo.addItem("Any");
+                for (String t : engine.roomTypes()) typeCombo.addItem(t);
+                typeCombo.setSelectedItem(sel);
+            }
+            @Override public void popupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent e) {}
+            @Override public void popupMenuCanceled(javax.swing.event.PopupMenuEvent e) {}
+        });
+
+        // double-click: carry the room, first check-in and length of stay over to the Book Room tab
+        table.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int row = table.getSelectedRow();
+                if (e.getClickCount() != 2 || row < 0) return;
+                AvailabilitySearch.Hit h = searchModel.get(table.convertRowIndexToModel(row));
+                bookRoomCombo.setSelectedItem(h.room);
+                bookDateSpinner.setValue(Date.from(h.firstIn.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+                bookNightsSpinner.setValue(current[0].nights);
+                JTabbedPane tabs = (JTabbedPane) SwingUtilities.getAncestorOfClass(JTabbedPane.class, p);
+                if (tabs != null) tabs.setSelectedIndex(tabs.indexOfTab("Book Room"));
+                refreshAvailability();
+            }
+        });
+
+        return p;
+    }
+
+    // ---------- Admin panel ----------
+    private JPanel buildAdminPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        JButton reloadBtn = new JButton("Reload Data");
+        JButton importCsvBtn = new JButton("Import Bookings CSV");
+        JButton exportCsvBtn = new JButton("Export Bookings CSV");
+        JButton exportPdfBtn = new JButton("Export Bookings PDF");
+        JButton ratesBtn = new JButton("Rate Plans");
+        top.add(reloadBtn); top.add(importCsvBtn); top.add(exportCsvBtn); top.add(exportPdfBtn); top.add(ratesBtn);
+
+        // filters are applied by the table model against the engine's indexes
+        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT,8,4));
+        filters.add(new JLabel("Check-in from:"));
+        adminFromField = new JTextField(8);
+        filters.add(adminFromField);
+        filters.add(new JLabel("to:"));
+        adminToField = new JTextField(8);
+        filters.add(adminToField);
+        filters.add(new JLabel("Room #:"));
+        adminRoomField = new JTextField(5);
+        filters.add(adminRoomField);
+        filters.add(new JLabel("Customer:"));
+        adminCustomerField = new JTextField(10);
+        filters.add(adminCustomerField);
+        JButton applyBtn = new JButton("Apply Filter");
+        JButton clearBtn = new JButton("Clear");
+        filters.add(applyBtn); filters.add(clearBtn);
+        adminCountLabel = new JLabel();
+        filters.add(adminCountLabel);
+
+        JPanel north = new JPanel(new GridLayout(2,1));
+        north.add(top); north.add(filters);
+        p.add(north, BorderLayout.NORTH);
+
+        bookingsAdminModel = new BookingsTableModel();
+        bookingsTableAdmin = new JTable(bookingsAdminModel);
+        p.add(new JScrollPane(bookingsTableAdmin), BorderLayout.CENTER);
+
+        // header click sorts by room (Room# column) or check-in (date columns); a second click reverses
+        bookingsTableAdmin.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int col = bookingsTableAdmin.convertColumnIndexToModel(bookingsTableAdmin.columnAtPoint(e.getPoint()));
+                BookingQuery.Order o = col == 0 ? BookingQuery.Order.ROOM : col == 2 || col == 3 ? BookingQuery.Order.CHECK_IN : null;
+                if (o == null) return;
+                BookingQuery q = bookingsAdminModel.query();
+                applyAdminQuery(q.sortedBy(o, q.order == o && !q.descending));
+            }
+        });
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton cancelBookingBtn = new JButton("Cancel Selected Booking");
+        bottom.add(cancelBookingBtn);
+        p.add(bottom, BorderLayout.SOUTH);
+
+        reloadBtn.addActionListener(e -> reloadBookingsAdmin());
+        applyBtn.addActionListener(e -> reloadBookingsAdmin());
+        clearBtn.addActionListener(e -> {
+            adminFromField.setText(""); adminToField.setText(""); adminRoomField.setText(""); adminCustomerField.setText("");
+            reloadBookingsAdmin();
+        });
+        cancelBookingBtn.addActionListener(e -> cancelSelectedBooking());
+        importCsvBtn.addActionListener(e -> importBookingsCsvAction());
+        exportCsvBtn.addActionListener(e -> exportBookingsCsvAction());
+        exportPdfBtn.addActionListener(e -> exportBookingsPdfAction());
+        ratesBtn.addActionListener(e -> runInBackground("Rate plans", HotelReservationSystem::ratesText,
+                text -> editRatePlans(text.isEmpty() ? Pricing.TEMPLATE : text)));
+
+        reloadBookingsAdmin();
+        return p;
+    }
+
+    // Plans are edited as the text of rates.csv; one that does not parse is reported and reopened, nothing changes.
+    private void editRatePlans(String text) {
+        JTextArea area = new JTextArea(text, 18, 70);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        int ok = JOptionPane.showConfirmDialog(frame, new JScrollPane(area), "Rate Plans", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (ok != JOptionPane.OK_OPTION) return;
+        String edited = area.getText();
+        try { Pricing.parse(Arrays.asList(edited.split("\r?\n"))); }
+        catch (IllegalArgumentException ex) { JOptionPane.showMessageDialog(frame, "Invalid rate plan, " + ex.getMessage()); editRatePlans(edited); return; }
+        runInBackground("Saving rate plans", () -> { saveRates(edited); return pricing.rules().size(); }, n -> {
+            refreshAvailability();
+            JOptionPane.showMessageDialog(frame, n + (n == 1 ? " rate rule" : " rate rules") + " in effect.");
+        });
+    }
+
+    // Rebuilds the query from the filter fields, keeping the current sort.
+    private void reloadBookingsAdmin() {
+        BookingQuery cur = bookingsAdminModel.query();
+        BookingQuery q;
+        try {
+            String from = adminFromField.getText().trim(), to = adminToField.getText().trim(), room = adminRoomField.getText().trim();
+            q = new BookingQuery(cur.order, cur.descending, room.isEmpty() ? null : Integer.valueOf(room),
+                    from.isEmpty() ? null : LocalDate.parse(from, DATE_FMT), to.isEmpty() ? null : LocalDate.parse(to, DATE_FMT),
+                    adminCustomerField.getText().trim());
+        } catch (Exception ex) { JOptionPane.showMessageDialog(frame,"Invalid filter: " + ex.getMessage()); return; }
+        applyAdminQuery(q);
+    }
+
+    // Only the row count and page checkpoints are computed up front (off the EDT); rows are paged in as
+    // they scroll into view. A check-in range reaching into archived months loads those months first.
+    private void applyAdminQuery(BookingQuery q) {
+        runInBackground("Reload", () -> {
+            if (q.from != null) engine.ensureLoaded(q.from, q.to == null ? LocalDate.MAX : q.to.plusDays(1));
+            return BookingsTableModel.index(q);
+        }, idx -> {
+            bookingsAdminModel.setQuery(q, idx);
+            adminCountLabel.setText(idx.count + (idx.count == 1 ? " booking" : " bookings"));
+        });
+    }
+
+    private void cancelSelectedBooking() {
+        int r = bookingsTableAdmin.getSelectedRow();
+        if (r == -1) return;
+        int mr = bookingsTableAdmin.convertRowIndexToModel(r);
+        Booking b = bookingsAdminModel.get(mr);
+        if (b == null) return;
+        runInBackground("Cancel", () -> engine.cancel(b.roomNumber, b.date),
+                gone -> JOptionPane.showMessageDialog(frame, gone != null ? "Booking canceled." : "Booking was already canceled."));
+    }
+
+    // ---------- Dashboard panel ----------
+    // Occupancy / ADR / RevPAR from the analytics rollups; queries are cheap, but still run off the EDT.
+    private JPanel buildDashboardPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        LocalDate today = LocalDate.now();
+        top.add(new JLabel("From:"));
+        JTextField fromField = new JTextField(today.withDayOfMonth(1).format(DATE_FMT), 8);
+        top.add(fromField);
+        top.add(new JLabel("To:"));
+        JTextField toField = new JTextField(today.withDayOfMonth(today.lengthOfMonth()).format(DATE_FMT), 8);
+        top.add(toField);
+        JComboBox<Analytics.Granularity> granCombo = new JComboBox<>(Analytics.Granularity.values());
+        JComboBox<Analytics.Breakdown> byCombo = new JComboBox<>(Analytics.Breakdown.values());
+        top.add(new JLabel("By:")); top.add(byCombo);
+        top.add(new JLabel("Period:")); top.add(granCombo);
+        JButton refreshBtn = new JButton("Refresh");
+        JButton csvBtn = new JButton("Export CSV");
+        JButton pdfBtn = new JButton("Export PDF");
+        top.add(refreshBtn); top.add(csvBtn); top.add(pdfBtn);
+        p.add(top, BorderLayout.NORTH);
+
+        RowTableModel<String[]> model = new RowTableModel<String[]>(Analytics.COLUMNS) {
+            @Override Object value(String[] row, int col) { return row[col]; }
+        };
+        p.add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+
+        Runnable refresh = () -> {
+            LocalDate from, to;
+            try { from = LocalDate.parse(fromField.getText().trim(), DATE_FMT); to = LocalDate.parse(toField.getText().trim(), DATE_FMT).plusDays(1); }
+            catch (Exception ex) { JOptionPane.showMessageDialog(frame,"Invalid date: " + ex.getMessage()); return; }
+            if (!to.isAfter(from)) { JOptionPane.showMessageDialog(frame,"'To' must not be before 'From'."); return; }
+            Analytics.Granularity g = (Analytics.Granularity) granCombo.getSelectedItem();
+            Analytics.Breakdown by = (Analytics.Breakdown) byCombo.getSelectedItem();
+            String title = "Occupancy " + from.format(DATE_FMT) + " to " + to.minusDays(1).format(DATE_FMT);
+            runInBackground("Dashboard", () -> { engine.ensureLoaded(from, to); return analytics.report(from, to, g, by); }, rows -> {
+                dashboardRows = rows; dashboardTitle = title;
+                model.setAll(rows);
+            });
+        };
+        refreshBtn.addActionListener(e -> refresh.run());
+        csvBtn.addActionListener(e -> {
+            JFileChooser fc = new JFileChooser();
+            fc.setSelectedFile(new File("occupancy.csv"));
+            if (fc.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+            Path out = fc.getSelectedFile().toPath();
+            List<String[]> rows = dashboardRows;
+            runInBackground("Export", () -> {
+                try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                    w.write("group,room_nights,available,occupancy_pct,adr,revpar,revenue");
+                    w.newLine();
+                    for (String[] r : rows) { w.write(csvRow(r)); w.newLine(); }
+                }
+                return out;
+            }, o -> JOptionPane.showMessageDialog(frame, "Exported to " + o));
+        });
+        pdfBtn.addActionListener(e -> {
+            JFileChooser fc = new JFileChooser();
+            fc.setSelectedFile(new File("occupancy.pdf"));
+            if (fc.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+            Path out = fc.getSelectedFile().toPath();
+            List<String[]> rows = dashboardRows;
+            String title = dashboardTitle;
+            runInBackground("PDF export", () -> PdfReport.writeTable(out.toFile(), title, Analytics.COLUMNS,
+                    new int[] {30, 12, 10, 12, 10, 10, 14}, 1, rows),
+                    pages -> JOptionPane.showMessageDialog(frame, "PDF exported to " + out));
+        });
+
+        refresh.run();
+        return p;
+    }
+
+    // ---------- Diagnostics panel ----------
+    // Cumulative operation counts and latency percentiles from Metrics, refreshed every two seconds while visible.
+    private JPanel buildDiagnosticsPanel() {
+        JPanel p = new JPanel(new BorderLayout(8,8));
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT,8,8));
+        JButton refreshBtn = new JButton("Refresh");
+        JLabel memLabel = new JLabel();
+        top.add(refreshBtn); top.add(memLabel);
+        p.add(top, BorderLayout.NORTH);
+
+        RowTableModel<String[]> model = new RowTableModel<String[]>(Metrics.COLUMNS) {
+            @Override Object value(String[] row, int col) { return row[col]; }
+        };
+        p.add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+
+        Runnable refresh = () -> {
+            model.setAll(Metrics.table());
+            Runtime rt = Runtime.getRuntime();
+            memLabel.setText(engine.bookingCount() + " bookings in memory, heap " + ((rt.totalMemory() - rt.freeMemory()) >> 20)
+                    + " of " + (rt.maxMemory() >> 20) + " MB");
+        };
+        refreshBtn.addActionListener(e -> refresh.run());
+        new javax.swing.Timer(2000, e -> { if (p.isShowing()) refresh.run(); }).start();
+
+        refresh.run();
+        return p;
+    }
+
+    // ---------- Import / export actions ----------
+    // Parsing runs on a fork-join pool and the merge on a worker thread; only the report touches the EDT.
+    private void importBookingsCsvAction() {
+        JFileChooser fc = new JFileChooser();
+        if (fc.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        Path in = fc.getSelectedFile().toPath();
+        runInBackground("Import", () -> {
+            BookingImporter.Result res = BookingImporter.parse(in, ForkJoinPool.commonPool());
+            res.mergeInto();
+            if (res.accepted > 0) saveBookings();
+            if (!res.rejected.isEmpty())
+                Files.write(in.resolveSibling(in.getFileName() + ".rejected.txt"), res.rejected, StandardCharsets.UTF_8);
+            return res;
+        }, res -> {
+            reloadBookingsAdmin();
+            StringBuilder msg = new StringBuilder(res.summary());
+            if (!res.rejected.isEmpty()) {
+                msg.append("\nRejected rows written to ").append(in.resolveSibling(in.getFileName() + ".rejected.txt"));
+                res.rejected.stream().limit(20).forEach(r -> msg.append("\n").append(r));
+            }
+            JOptionPane.showMessageDialog(frame, msg.toString());
+        });
+    }
+
+    private void exportBookingsCsvAction() {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("bookings_export.csv"));
+        if (fc.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            Path out = fc.getSelectedFile().toPath();
+            runInBackground("Export", () -> { exportBookingsCsv(out); return out; },
+                    o -> JOptionPane.showMessageDialog(frame, "Exported to " + o.toString()));
+        }
+    }
+
+    private void exportBookingsPdfAction() {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("bookings_report.pdf"));
+        if (fc.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            Object g = JOptionPane.showInputDialog(frame, "Group bookings by:", "PDF Report", JOptionPane.QUESTION_MESSAGE,
+                    null, PdfReport.Grouping.values(), PdfReport.Grouping.NONE);
+            if (g == null) return;
+            Path out = fc.getSelectedFile().toPath();
+            runInBackground("PDF export", () -> PdfReport.write(out.toFile(), (PdfReport.Grouping) g),
+                    pages -> JOptionPane.showMessageDialog(frame, "PDF exported to " + out + " (" + pages + " pages)"));
+        }
+    }
+
+    // ---------- PDF reports ----------
+    // Streams bookings from the engine's sorted indexes straight into PDFBox. Content streams live in a
+    // scratch file (MemoryUsageSetting temp-file mode), so the heap only holds the page tree. Each page is a
+    // single text object: font and leading are set once per page and every row is one showText + newLine,
+    // instead of a beginText/setFont/endText block per line. Courier keeps the padded columns aligned.
+    static class PdfReport {
+        enum Grouping { NONE, DATE, ROOM, CUSTOMER }
+
+        private static final PDFont FONT = PDType1Font.COURIER, BOLD = PDType1Font.COURIER_BOLD;
+        private static final float SIZE = 9, LEADING = 11, MARGIN = 50;
+        private static final String[] BOOKING_COLUMNS = {"Room", "Customer", "Check-in", "Check-out", "Nights", "Amount"};
+        private static final int[] BOOKING_WIDTHS = {6, 26, 11, 11, 7, 13};
+
+        private final PDDocument doc;
+        private final String title, header;
+        private final int[] widths;
+        private final int rightFrom;  // columns from here on are numeric and right-aligned
+        private PDPageContentStream cs;
+        private boolean bold;
+        private int linesLeft, pages;
+        // running totals for the current group and the whole report
+        private long groupCount, groupNights, count, nights;
+        private double groupAmount, amount;
+
+        private PdfReport(PDDocument doc, String title, String[] columns, int[] widths, int rightFrom) {
+            this.doc = doc; this.title = title; this.widths = widths; this.rightFrom = rightFrom;
+            this.header = row(columns);
+        }
+
+        // Writes the bookings report and returns its page count.
+        static int write(File out, Grouping g) throws IOException {
+            long t0 = Metrics.start();
+            boolean ok = false;
+            engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX);
+            try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+                PdfReport r = new PdfReport(doc, "Bookings Report" + (g == Grouping.NONE ? "" : " by " + g.name().toLowerCase()),
+                        BOOKING_COLUMNS, BOOKING_WIDTHS, 4);
+                r.writeBookings(source(g), g);
+                doc.save(out);
+                ok = true;
+                return r.pages;
+            } finally { Metrics.stop(Metrics.Op.EXPORT_PDF, t0, ok); }
+        }
+
+        // A plain table (e.g. the analytics dashboard); the last row is printed bold as a total.
+        static int writeTable(File out, String title, String[] columns, int[] widths, int rightFrom, List<String[]> rows) throws IOException {
+            long t0 = Metrics.start();
+            boolean ok = false;
+            try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+                PdfReport r = new PdfReport(doc, title, columns, widths, rightFrom);
+                r.newPage();
+                for (int i = 0; i < rows.size(); i++) r.line(r.row(rows.get(i)), i == rows.size() - 1);
+                r.cs.endText();
+                r.cs.close();
+                doc.save(out);
+                ok = true;
+                return r.pages;
+            } finally { Metrics.stop(Metrics.Op.EXPORT_PDF, t0, ok); }
+        }
+
+        // Every grouping comes straight off an engine index: check-in order, each room's stays, or each
+        // customer's posting list in name order.
+        private static Iterator<Booking> source(Grouping g) {
+            switch (g) {
+                case ROOM: return new BookingQuery(BookingQuery.Order.ROOM, false, null, null, null, null).scan(null);
+                case CUSTOMER: return engine.customers.byName().stream().flatMap(c -> c.stays.values().stream()).iterator();
+                default: return engine.bookings().iterator();
+            }
+        }
+
+        private static Object groupKey(Grouping g, Booking b) {
+            switch (g) {
+                case DATE: return b.date;
+                case ROOM: return b.roomNumber;
+                case CUSTOMER: return b.customer;
+                default: return null;
+            }
+        }
+
+        private static String groupLabel(Grouping g, Object key) {
+            switch (g) {
+                case DATE: return "Check-in " + ((LocalDate) key).format(DATE_FMT);
+                case ROOM: { Room r = engine.room((Integer) key); return "Room " + key + (r != null ? " (" + r.type + ")" : ""); }
+                default: return "Customer " + key;
+            }
+        }
+
+        private void writeBookings(Iterator<Booking> it, Grouping g) throws IOException {
+            newPage();
+            Object group = null;
+            while (it.hasNext()) {
+                Booking b = it.next();
+                if (g != Grouping.NONE) {
+                    Object k = groupKey(g, b);
+                    if (!k.equals(group)) {
+                        if (group != null) subtotal(groupLabel(g, group));
+                        group = k;
+                        line(groupLabel(g, k), true);
+                    }
+                }
+                Room room = engine.room(b.roomNumber);
+                double amt = b.total(room);
+                line(row(Integer.toString(b.roomNumber), b.customer, b.date.format(DATE_FMT), b.checkOut.format(DATE_FMT),
+                        Integer.toString(b.nights()), money(amt)), false);
+                groupCount++; groupNights += b.nights(); groupAmount += amt;
+            }
+            if (group != null) subtotal(groupLabel(g, group));
+            count += groupCount; nights += groupNights; amount += groupAmount;
+            line("", false);
+            line(row("", "Total: " + count + " bookings", "", "", Long.toString(nights), money(amount)), true);
+            cs.endText();
+            cs.close();
+        }
+
+        private void subtotal(String label) throws IOException {
+            line(row("", "Subtotal: " + groupCount + " bookings", "", "", Long.toString(groupNights), money(groupAmount)), true);
+            line("", false);
+            count += groupCount; nights += groupNights; amount += groupAmount;
+            groupCount = 0; groupNights = 0; groupAmount = 0;
+        }
+
+        private void line(String text, boolean b) throws IOException {
+            if (linesLeft == 0) newPage();
+            if (b != bold) { cs.setFont(b ? BOLD : FONT, SIZE); bold = b; }
+            cs.showText(pdfSafe(text));
+            cs.newLine();
+            linesLeft--;
+        }
+
+        private void newPage() throws IOException {
+            if (cs != null) { cs.endText(); cs.close(); }
+            PDPage page = new PDPage(PDRectangle.LETTER);
+            doc.addPage(page);
+            pages++;
+            cs = new PDPageContentStream(doc, page);
+            cs.beginText();
+            cs.setLeading(LEADING);
+            cs.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN);
+            cs.setFont(BOLD, SIZE);
+            bold = true;
+            cs.showText(pdfSafe(title + "  -  page " + pages));
+            cs.newLine();
+            cs.showText(header);
+            cs.newLine();
+            cs.newLine();
+            linesLeft = (int) ((page.getMediaBox().getHeight() - 2 * MARGIN) / LEADING) - 3;
+        }
+
+        // Fixed-width row: text columns left-aligned, numeric ones right-aligned.
+        private String row(String... cols) {
+            StringBuilder sb = new StringBuilder(80);
+            for (int i = 0; i < cols.length; i++) {
+                String c = truncate(cols[i], widths[i] - 1);
+                int pad = widths[i] - c.length();
+                if (i >= rightFrom) for (int k = 0; k < pad; k++) sb.append(' ');
+                sb.append(c);
+                if (i < rightFrom) for (int k = 0; k < pad; k++) sb.append(' ');
+            }
+            return sb.toString();
+        }
+
+        private static String money(double v) {
+            long cents = Math.round(v * 100);
+            String frac = Long.toString(Math.abs(cents % 100));
+            return (cents < 0 ? "-" : "") + Math.abs(cents / 100) + (frac.length() == 1 ? ".0" : ".") + frac;
+        }
+
+        // The standard 14 fonts only encode WinAnsi; anything else would make showText throw.
+        private static String pdfSafe(String s) {
+            StringBuilder sb = null;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                boolean ok = c >= 0x20 && c < 0x7f || c >= 0xa0 && c <= 0xff;
+                if (!ok && sb == null) sb = new StringBuilder(s.substring(0, i));
+                if (sb != null) sb.append(ok ? c : '?');
+            }
+            return sb == null ? s : sb.toString();
+        }
+    }
+
+    private static String truncate(String s, int n) { return s.length()<=n ? s : s.substring(0,n-3)+"..."; }
+
+    // ---------- Helper utilities ----------
+    private static void reloadAvailabilityModel() {
+        // not used globally, availability refreshed on demand
+    }
+
+    // ---------- simple helpers to save data ----------
+    private static void persistAll() {
+        saveRooms();
+        saveBookings();
+    }
+
+    // ---------- END ----------
+}
+
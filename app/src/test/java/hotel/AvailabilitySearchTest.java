@@ -0,0 +1,108 @@
+package hotel;
+
+import hotel.HotelReservationSystem.AvailabilitySearch;
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.BookingEngine;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The shift-and-AND check-in scan and the transposed booked-night bitmaps it runs on, against plain
+// night-by-night checks.
+class AvailabilitySearchTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 10);
+
+    private static BitSet bits(int... nights) {
+        BitSet b = new BitSet();
+        for (int i : nights) b.set(i);
+        return b;
+    }
+
+    private static BitSet bruteCheckIns(BitSet booked, int days, int n) {
+        BitSet out = new BitSet();
+        for (int i = 0; i + n <= days; i++)
+            if (booked.get(i, i + n).isEmpty()) out.set(i);
+        return out;
+    }
+
+    @Test
+    void runsAcrossWordEdges() {
+        // free nights 61 .. 139 span the edges at 64 and 128
+        assertEquals(bits(61, 62, 63, 64, 65, 66, 67, 68, 69, 70), AvailabilitySearch.checkIns(bits(60, 140), 200, 70));
+        // a run ending exactly on a word edge (59 .. 63), and one starting on the next (128 .. 135)
+        BitSet booked = new BitSet();
+        booked.set(0, 59);
+        booked.set(64, 128);
+        assertEquals(bits(59, 128, 129, 130, 131), AvailabilitySearch.checkIns(booked, 136, 5));
+    }
+
+    @Test
+    void singleNightIsEveryFreeNight() {
+        BitSet booked = bits(0, 63, 64, 100, 731);
+        BitSet free = new BitSet();
+        free.set(0, 732);
+        free.andNot(booked);
+        assertEquals(free, AvailabilitySearch.checkIns(booked, 732, 1));
+    }
+
+    @Test
+    void stayAsLongAsTheWindow() {
+        assertEquals(bits(0), AvailabilitySearch.checkIns(new BitSet(), 130, 130));
+        assertEquals(new BitSet(), AvailabilitySearch.checkIns(bits(129), 130, 130));
+        assertEquals(new BitSet(), AvailabilitySearch.checkIns(new BitSet(), 130, 131));
+    }
+
+    @Test
+    void checkInsMatchABruteForceScan() {
+        Random rnd = new Random(19);
+        for (int t = 0; t < 500; t++) {
+            int days = 1 + rnd.nextInt(t % 5 == 0 ? AvailabilitySearch.MAX_WINDOW : 200);
+            BitSet booked = new BitSet();
+            // sparse to dense, in runs like real stays
+            int density = 2 + rnd.nextInt(40);
+            for (int i = 0; i < days; i++)
+                if (rnd.nextInt(density) == 0) { int len = 1 + rnd.nextInt(6); booked.set(i, Math.min(days, i + len)); i += len; }
+            int n = 1 + rnd.nextInt(Math.min(days, 90));
+            assertEquals(bruteCheckIns(booked, days, n), AvailabilitySearch.checkIns(booked, days, n), "days " + days + ", n " + n + ", booked " + booked);
+        }
+    }
+
+    @Test
+    void bookedNightsAndCheckInsAgreeWithIsFree() {
+        Random rnd = new Random(1319);
+        BookingEngine eng = new BookingEngine();
+        // more rooms than one 64-bit word of occupancy slots
+        int[] numbers = new int[150];
+        for (int k = 0; k < numbers.length; k++) {
+            numbers[k] = 100 + k;
+            eng.addRoom(new Room(numbers[k], "Std", 1000));
+        }
+        for (int i = 0; i < 3000; i++) {
+            LocalDate in = DAY.plusDays(rnd.nextInt(300));
+            eng.reserve(new Booking(numbers[rnd.nextInt(numbers.length)], "G" + i, in, in.plusDays(1 + rnd.nextInt(7))));
+        }
+        for (int t = 0; t < 10; t++) {
+            // windows start mid-word of the night bitmaps and run past the last stay
+            LocalDate from = DAY.plusDays(rnd.nextInt(200) - 10);
+            int days = 1 + rnd.nextInt(200), n = 1 + rnd.nextInt(Math.min(days, 10));
+            BitSet[] booked = eng.bookedNights(numbers, from, days);
+            for (int k = 0; k < numbers.length; k++) {
+                BitSet expected = new BitSet();
+                for (int i = 0; i < days; i++)
+                    if (!eng.isFree(numbers[k], from.plusDays(i), from.plusDays(i + 1))) expected.set(i);
+                assertEquals(expected, booked[k], "room " + numbers[k] + " from " + from);
+
+                BitSet starts = new BitSet();
+                for (int i = 0; i + n <= days; i++)
+                    if (eng.isFree(numbers[k], from.plusDays(i), from.plusDays(i + n))) starts.set(i);
+                assertEquals(starts, AvailabilitySearch.checkIns(booked[k], days, n), "room " + numbers[k] + " from " + from + ", " + n + " nights");
+            }
+        }
+        // a room with no stays, or unknown to the index, has an empty bitmap
+        assertTrue(eng.bookedNights(new int[] {999}, DAY, 64)[0].isEmpty());
+    }
+}
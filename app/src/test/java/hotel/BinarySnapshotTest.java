@@ -0,0 +1,134 @@
+package hotel;
+
+import hotel.HotelReservationSystem.BinarySnapshot;
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Binary snapshots: round trips through the current format and reads of files in the older layouts.
+class BinarySnapshotTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 10);
+
+    @TempDir Path dir;
+
+    @Test
+    void bookingsRoundTrip() throws IOException {
+        Booking quoted = new Booking(101, "Ann", DAY, DAY.plusDays(3));
+        quoted.amount = 3600.5;
+        List<Booking> in = Arrays.asList(quoted, new Booking(102, "Bob", DAY), new Booking(103, "Ann", DAY.plusDays(1), DAY.plusDays(8)));
+        Path file = dir.resolve("bookings.bin");
+        BinarySnapshot.writeBookings(file, in);
+        List<Booking> out = new ArrayList<>();
+        BinarySnapshot.readBookings(file, out);
+        assertEquals(in.size(), out.size());
+        for (int i = 0; i < in.size(); i++) {
+            Booking a = in.get(i), b = out.get(i);
+            assertEquals(a.roomNumber, b.roomNumber);
+            assertEquals(a.customer, b.customer);
+            assertEquals(a.date, b.date);
+            assertEquals(a.checkOut, b.checkOut);
+            assertEquals(a.amount, b.amount);   // NaN equals NaN here
+        }
+    }
+
+    @Test
+    void roomsRoundTrip() throws IOException {
+        List<Room> in = Arrays.asList(new Room(101, "Std", 1000), new Room(102, "Suite", 2500.25), new Room(103, "Std", 1100));
+        Path file = dir.resolve("rooms.bin");
+        BinarySnapshot.writeRooms(file, in);
+        List<Room> out = new ArrayList<>();
+        BinarySnapshot.readRooms(file, out);
+        assertEquals(in.size(), out.size());
+        for (int i = 0; i < in.size(); i++) {
+            assertEquals(in.get(i).number, out.get(i).number);
+            assertEquals(in.get(i).type, out.get(i).type);
+            assertEquals(in.get(i).price, out.get(i).price);
+        }
+    }
+
+    @Test
+    void version2RecordsLoadWithoutAnAmount() throws IOException {
+        Path file = writeOld(2, new int[][] {{101, 3, 0}, {102, 1, 1}});
+        List<Booking> out = new ArrayList<>();
+        BinarySnapshot.readBookings(file, out);
+        assertEquals(2, out.size());
+        assertEquals(101, out.get(0).roomNumber);
+        assertEquals("Ann", out.get(0).customer);
+        assertEquals(DAY.plusDays(3), out.get(0).checkOut);
+        assertTrue(Double.isNaN(out.get(0).amount));
+        assertEquals("Bob", out.get(1).customer);
+        assertEquals(1, out.get(1).nights());
+    }
+
+    @Test
+    void version1RecordsLoadAsOneNightStays() throws IOException {
+        Path file = writeOld(1, new int[][] {{101, 1, 1}, {102, 1, 0}});
+        List<Booking> out = new ArrayList<>();
+        BinarySnapshot.readBookings(file, out);
+        assertEquals(2, out.size());
+        assertEquals("Bob", out.get(0).customer);
+        assertEquals(DAY.plusDays(1), out.get(0).checkOut);
+        assertEquals(102, out.get(1).roomNumber);
+        assertEquals("Ann", out.get(1).customer);
+        assertTrue(Double.isNaN(out.get(1).amount));
+    }
+
+    @Test
+    void overLongNameIsCutOnACharacterBoundary() throws IOException {
+        // "ab" then two-byte characters: 0xffff bytes would end halfway through one
+        StringBuilder sb = new StringBuilder("ab");
+        for (int i = 0; i < 40_000; i++) sb.append('é');
+        String name = sb.toString();
+        Path file = dir.resolve("bookings.bin");
+        BinarySnapshot.writeBookings(file, Collections.singletonList(new Booking(101, name, DAY)));
+        List<Booking> out = new ArrayList<>();
+        BinarySnapshot.readBookings(file, out);
+        String read = out.get(0).customer;
+        assertEquals(0xfffe, read.getBytes(StandardCharsets.UTF_8).length);
+        assertTrue(name.startsWith(read));
+    }
+
+    @Test
+    void utf8PrefixNeverSplitsACharacter() {
+        byte[] euro = "a€€".getBytes(StandardCharsets.UTF_8);   // 1 + 3 + 3 bytes
+        assertEquals(7, BinarySnapshot.utf8Prefix(euro, 7));
+        assertEquals(4, BinarySnapshot.utf8Prefix(euro, 6));
+        assertEquals(4, BinarySnapshot.utf8Prefix(euro, 5));
+        assertEquals(4, BinarySnapshot.utf8Prefix(euro, 4));
+        assertEquals(1, BinarySnapshot.utf8Prefix(euro, 3));
+        assertEquals(1, BinarySnapshot.utf8Prefix(euro, 1));
+    }
+
+    // A bookings snapshot in the version 1 (12-byte) or version 2 (16-byte) record layout, names Ann and Bob.
+    // Each record is {room, nights, customerId}; version 1 has no nights, every stay checks in on DAY.
+    private Path writeOld(int version, int[][] records) throws IOException {
+        Path file = dir.resolve("bookings-v" + version + ".bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(BinarySnapshot.BOOKINGS_MAGIC);
+            out.writeInt(version);
+            out.writeInt(2);
+            out.writeInt(records.length);
+            for (String s : new String[] {"Ann", "Bob"}) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(b.length);
+                out.write(b);
+            }
+            for (int[] r : records) {
+                out.writeInt((int) DAY.toEpochDay());
+                if (version >= 2) out.writeInt(r[1]);
+                out.writeInt(r[0]);
+                out.writeInt(r[2]);
+            }
+        }
+        return file;
+    }
+}
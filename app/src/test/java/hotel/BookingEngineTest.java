@@ -0,0 +1,112 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.BookingEngine;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Concurrency guarantees of the booking engine, on a local engine (not the application's static one).
+class BookingEngineTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 10);
+    private static final int THREADS = 32;
+
+    private BookingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new BookingEngine();
+        for (int r = 101; r <= 110; r++) engine.addRoom(new Room(r, "Std", 1000));
+    }
+
+    // Runs 'task' on THREADS threads released together; returns what each returned.
+    private static <T> List<T> race(Callable<T> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<T>> fs = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) fs.add(pool.submit(() -> { go.await(); return task.call(); }));
+            go.countDown();
+            List<T> out = new ArrayList<>();
+            for (Future<T> f : fs) out.add(f.get(30, TimeUnit.SECONDS));
+            return out;
+        } finally { pool.shutdownNow(); }
+    }
+
+    private void assertNoOverlaps() {
+        for (Room r : engine.rooms()) {
+            Booking prev = null;
+            for (Booking b : engine.overlapping(r.number, LocalDate.MIN, LocalDate.MAX)) {
+                if (prev != null) assertFalse(b.date.isBefore(prev.checkOut), "room " + r.number + ": " + prev + " overlaps " + b);
+                prev = b;
+            }
+        }
+    }
+
+    @Test
+    void concurrentReservationsOfTheSameRoomHaveExactlyOneWinner() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            AtomicInteger n = new AtomicInteger();
+            // every request overlaps every other on night DAY+3
+            List<String> results = race(() -> {
+                int i = n.getAndIncrement() % 4;
+                return engine.reserve(new Booking(101, "G", DAY.plusDays(i), DAY.plusDays(4 + i)));
+            });
+            assertEquals(1, results.stream().filter(Objects::isNull).count(), "winners in round " + round);
+            assertEquals(1, engine.bookingCount());
+            assertNotNull(engine.cancel(101, DAY.plusDays(3)));
+        }
+    }
+
+    @Test
+    void groupIsRefusedWholeWhenOneRoomIsTaken() {
+        assertNull(engine.reserve(new Booking(103, "Other", DAY.plusDays(1), DAY.plusDays(2))));
+        List<Booking> group = Arrays.asList(
+                new Booking(101, "Tour", DAY, DAY.plusDays(3)),
+                new Booking(102, "Tour", DAY, DAY.plusDays(3)),
+                new Booking(103, "Tour", DAY, DAY.plusDays(3)));
+        String[] why = engine.reserveAll(group);
+        assertNotNull(why);
+        assertNull(why[0]);
+        assertNull(why[1]);
+        assertEquals("room already booked for these dates", why[2]);
+        assertEquals(1, engine.bookingCount());
+        assertTrue(engine.isFree(101, DAY, DAY.plusDays(3)));
+        assertTrue(engine.isFree(102, DAY, DAY.plusDays(3)));
+    }
+
+    @Test
+    void acceptedGroupReachesListenersAsOneEvent() {
+        List<List<Booking>> events = new ArrayList<>();
+        engine.addListener(new BookingEngine.Listener() {
+            @Override public void bookedAll(List<Booking> bs) { events.add(bs); }
+        });
+        List<Booking> group = Arrays.asList(new Booking(104, "Tour", DAY, DAY.plusDays(2)), new Booking(105, "Tour", DAY, DAY.plusDays(2)));
+        assertNull(engine.reserveAll(group));
+        assertEquals(Collections.singletonList(group), events);
+        assertEquals(2, engine.bookingCount());
+    }
+
+    @Test
+    void concurrentOverlappingGroupsNeverPartiallyApply() throws Exception {
+        AtomicInteger n = new AtomicInteger();
+        // each group takes three neighbouring rooms, so neighbouring groups share rooms
+        List<String[]> results = race(() -> {
+            int first = 101 + n.getAndIncrement() % 8;
+            List<Booking> g = new ArrayList<>();
+            for (int r = first; r < first + 3; r++) g.add(new Booking(r, "Group" + first, DAY, DAY.plusDays(2)));
+            return engine.reserveAll(g);
+        });
+        long accepted = results.stream().filter(Objects::isNull).count();
+        assertTrue(accepted >= 1);
+        assertEquals(3 * accepted, engine.bookingCount(), "every accepted group has all three rooms, refused ones none");
+        assertNoOverlaps();
+    }
+}
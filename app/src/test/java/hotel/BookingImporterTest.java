@@ -0,0 +1,124 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.BookingImporter;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static hotel.HotelReservationSystem.engine;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The bulk CSV importer end to end: parse a file, merge it into the application's engine, check what
+// went in and what was rejected at which line.
+class BookingImporterTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 10);
+
+    // Line 1 is the header; line 9 is blank; the last row has no newline.
+    private static final String[] ROWS = {
+            "room,customer,check_in,check_out,amount",
+            "101,Ann Lee,2030-03-10,2030-03-12,2400.00",
+            "102,Smith, John,2030-03-10,2030-03-11",
+            "103,\"O'Brien, Pat\",2030-03-10",
+            "abc,Bob,2030-03-10",
+            "104,Bob,2030-13-01",
+            "105, ,2030-03-10",
+            "106,Cy,2030-03-12,2030-03-10",
+            "",
+            "999,Dee,2030-03-10",
+            "101,Eve,2030-03-11,2030-03-13",
+            "104,Fay,2030-03-10,2030-03-11,",
+    };
+
+    @TempDir Path dir;
+
+    @BeforeEach
+    void setUp() {
+        List<Room> rooms = new ArrayList<>();
+        for (int r = 101; r <= 110; r++) rooms.add(new Room(r, "Std", 1000));
+        engine.replaceRooms(rooms);
+        engine.replaceBookings(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.replaceBookings(Collections.emptyList());
+        engine.replaceRooms(Collections.emptyList());
+    }
+
+    private BookingImporter.Result importFile(String content) throws IOException {
+        Path file = dir.resolve("import.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        BookingImporter.Result res = BookingImporter.parse(file, ForkJoinPool.commonPool());
+        res.mergeInto();
+        return res;
+    }
+
+    @Test
+    void importsRowsAndReportsRejectsByLine() throws IOException {
+        checkSmallFile(importFile(String.join("\n", ROWS)));
+    }
+
+    @Test
+    void crlfLineEndingsImportTheSame() throws IOException {
+        checkSmallFile(importFile(String.join("\r\n", ROWS)));
+    }
+
+    private static void checkSmallFile(BookingImporter.Result res) {
+        assertEquals(10, res.rows());
+        assertEquals(4, res.accepted);
+        assertEquals(Arrays.asList(
+                "line 5: bad room number: abc,Bob,2030-03-10",
+                "line 6: bad date: 104,Bob,2030-13-01",
+                "line 7: customer required: 105, ,2030-03-10",
+                "line 8: check-out must be after check-in: 106,Cy,2030-03-12,2030-03-10",
+                "line 10: unknown room: 999,Dee,2030-03-10,2030-03-11,",
+                "line 11: room already booked for these dates: 101,Eve,2030-03-11,2030-03-13,"), res.rejected);
+
+        Booking ann = engine.bookingAt(101, DAY);
+        assertEquals("Ann Lee", ann.customer);
+        assertEquals(DAY.plusDays(2), ann.checkOut);
+        assertEquals(2400.0, ann.amount);
+        // commas in the name are kept: the customer is everything between the room and the dates
+        assertEquals("Smith, John", engine.bookingAt(102, DAY).customer);
+        // the format has no quoting, so quotes are part of the name
+        assertEquals("\"O'Brien, Pat\"", engine.bookingAt(103, DAY).customer);
+        assertEquals(DAY.plusDays(1), engine.bookingAt(103, DAY).checkOut);
+        Booking fay = engine.bookingAt(104, DAY);
+        assertEquals("Fay", fay.customer);
+        assertTrue(Double.isNaN(fay.amount));
+        assertEquals(4, engine.bookingCount());
+    }
+
+    @Test
+    void rowsAcrossChunkBoundariesKeepTheirLineNumbers() throws IOException {
+        // a bit over one minimum chunk, so the file is parsed as at least two byte ranges
+        StringBuilder sb = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        int straddling = -1, badLine = -1;
+        for (int i = 0; sb.length() < (1 << 20) + (64 << 10); i++) {
+            String line = (101 + i % 10) + ",Guest " + i + "," + DAY.plusDays(i / 10);
+            if (badLine < 0 && sb.length() > (1 << 20) + 1000) { line = "101,Bad,2030-02-30"; badLine = i + 1; }
+            if (straddling < 0 && sb.length() + line.length() >= 1 << 20) straddling = i;
+            lines.add(line);
+            sb.append(line).append('\n');
+        }
+        BookingImporter.Result res = importFile(sb.toString());
+
+        assertTrue(res.chunks.size() >= 2, "chunks: " + res.chunks.size());
+        assertEquals(lines.size(), res.rows());
+        assertEquals(lines.size() - 1, res.accepted);
+        assertEquals(Collections.singletonList("line " + badLine + ": bad date: 101,Bad,2030-02-30"), res.rejected);
+        Booking b = engine.bookingAt(101 + straddling % 10, DAY.plusDays(straddling / 10));
+        assertEquals("Guest " + straddling, b.customer);
+    }
+}
@@ -0,0 +1,30 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Analytics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Dashboard figures and their CSV rows come out the same whatever the default locale.
+class DashboardExportTest {
+
+    @Test
+    void cellsUseADecimalPointUnderAnyLocale() {
+        Locale saved = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            String[] row = Analytics.cells("Std", new Analytics.Stats(5, 8, 60_050));
+            assertArrayEquals(new String[] {"Std", "5", "8", "62.5", "120.10", "75.06", "600.50"}, row);
+        } finally { Locale.setDefault(saved); }
+    }
+
+    @Test
+    void csvRowQuotesOnlyFieldsThatNeedIt() {
+        assertEquals("Total,5,8", HotelReservationSystem.csvRow(new String[] {"Total", "5", "8"}));
+        assertEquals("\"Room 101 (Suite, sea view)\",1", HotelReservationSystem.csvRow(new String[] {"Room 101 (Suite, sea view)", "1"}));
+        assertEquals("\"The \"\"Blue\"\" room\",\"a\nb\"", HotelReservationSystem.csvRow(new String[] {"The \"Blue\" room", "a\nb"}));
+        assertEquals(",x", HotelReservationSystem.csvRow(new String[] {"", "x"}));
+    }
+}
@@ -0,0 +1,122 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.DatabaseStorage;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+
+import static hotel.HotelReservationSystem.engine;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The H2 backend against a private in-memory database. A second plain JDBC connection stands in for
+// another process sharing the database.
+class DatabaseStorageTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 10);
+
+    private String url;
+    private DatabaseStorage storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        url = "jdbc:h2:mem:hrs-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        engine.replaceBookings(Collections.emptyList());
+        storage = new DatabaseStorage(url, 4, 3);
+        storage.open();
+        List<Room> rooms = Arrays.asList(new Room(101, "Std", 1000), new Room(102, "Std", 1000));
+        storage.saveRooms(rooms);
+        engine.replaceRooms(rooms);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        engine.setCommitter(bs -> null);
+        engine.setLoader((from, to) -> {});
+        engine.replaceBookings(Collections.emptyList());
+        engine.replaceRooms(Collections.emptyList());
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement()) { st.execute("SHUTDOWN"); }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // A stay written straight to the database, as another process would: the stay row, then one row per night.
+    private void insertElsewhere(int room, LocalDate in, LocalDate out) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url, "sa", "")) {
+            c.setAutoCommit(false);
+            try (PreparedStatement stay = c.prepareStatement("INSERT INTO bookings (room, check_in, check_out, customer) VALUES (?, ?, ?, 'Other')");
+                 PreparedStatement night = c.prepareStatement("INSERT INTO booked_nights (room, night, check_in) VALUES (?, ?, ?)")) {
+                stay.setInt(1, room); stay.setObject(2, in); stay.setObject(3, out);
+                stay.executeUpdate();
+                for (LocalDate d = in; d.isBefore(out); d = d.plusDays(1)) {
+                    night.setInt(1, room); night.setObject(2, d); night.setObject(3, in);
+                    night.executeUpdate();
+                }
+                c.commit();
+            } catch (SQLException e) { c.rollback(); throw e; }
+        }
+    }
+
+    @Test
+    void reservationStoresTheStayAndEveryNight() throws SQLException {
+        assertNull(engine.reserve(new Booking(101, "Ann", DAY, DAY.plusDays(3))));
+        assertEquals(1, count("SELECT COUNT(*) FROM bookings"));
+        assertEquals(3, count("SELECT COUNT(*) FROM booked_nights WHERE room = 101"));
+    }
+
+    @Test
+    void overlappingInsertIsRefusedByTheNightsKey() throws SQLException {
+        assertNull(engine.reserve(new Booking(101, "Ann", DAY, DAY.plusDays(3))));
+        // starts on a different night, so only the night rows can catch the overlap
+        SQLException e = assertThrows(SQLException.class, () -> insertElsewhere(101, DAY.plusDays(2), DAY.plusDays(5)));
+        assertEquals("23505", e.getSQLState());
+        assertEquals(1, count("SELECT COUNT(*) FROM bookings"));
+    }
+
+    @Test
+    void reservationConflictingWithAnotherProcessIsNotApplied() throws SQLException {
+        insertElsewhere(102, DAY.plusDays(1), DAY.plusDays(2));
+        // this engine has not seen the other stay, so only the database can refuse the booking
+        assertEquals("room already booked for these dates", engine.reserve(new Booking(102, "Ann", DAY, DAY.plusDays(3))));
+        assertEquals(0, engine.bookingCount());
+        assertEquals(1, count("SELECT COUNT(*) FROM bookings"));
+        assertEquals(1, count("SELECT COUNT(*) FROM booked_nights"));
+    }
+
+    @Test
+    void cancelRemovesTheStayAndItsNights() throws SQLException {
+        assertNull(engine.reserve(new Booking(101, "Ann", DAY, DAY.plusDays(3))));
+        Booking cancelled = engine.cancel(101, DAY.plusDays(1));
+        assertNotNull(cancelled);
+        storage.listener().cancelled(cancelled);   // what the attached persistence listener does
+        assertEquals(0, count("SELECT COUNT(*) FROM bookings"));
+        assertEquals(0, count("SELECT COUNT(*) FROM booked_nights"));
+        // the nights are free again, for this engine and for the database
+        assertNull(engine.reserve(new Booking(101, "Bob", DAY.plusDays(1), DAY.plusDays(2))));
+        assertEquals(1, count("SELECT COUNT(*) FROM booked_nights"));
+    }
+
+    @Test
+    void historyBeforeTheHotWindowIsFetchedOnDemand() throws SQLException {
+        LocalDate old = LocalDate.now().minusYears(2);
+        insertElsewhere(101, old, old.plusDays(2));
+        insertElsewhere(102, old.plusDays(1), old.plusDays(4));
+        insertElsewhere(101, DAY, DAY.plusDays(1));
+        storage.loadBookings();
+        assertEquals(1, engine.bookingCount());
+
+        engine.ensureLoaded(old, old.plusDays(7));
+        assertEquals(3, engine.bookingCount());
+        assertEquals("Other", engine.bookingAt(102, old.plusDays(3)).customer);
+        assertFalse(engine.isFree(101, old, old.plusDays(1)));
+    }
+}
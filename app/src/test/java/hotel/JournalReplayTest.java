@@ -0,0 +1,68 @@
+package hotel;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The journal record parser shared by startup replay and live sync.
+class JournalReplayTest {
+
+    private static List<String> parse(String journal, int[] consumed) {
+        byte[] data = journal.getBytes(StandardCharsets.UTF_8);
+        List<String> seen = new ArrayList<>();
+        consumed[0] = HotelReservationSystem.forEachJournalRecord(data, data.length, (op, origin, p, stays) -> {
+            StringBuilder sb = new StringBuilder(op).append(':').append(p[1]);
+            for (String[] s : stays) sb.append(' ').append(s[1]);
+            if (origin != null) sb.append(" from ").append(origin);
+            seen.add(sb.toString());
+        });
+        return seen;
+    }
+
+    @Test
+    void tornGroupIsNeitherAppliedNorConsumed() {
+        String complete = "+,101,Ann,2030-03-10,2030-03-12,2400.00\n"
+                + "g,2\n+,102,Tour,2030-03-10,2030-03-11,1200.00\n+,103,Tour,2030-03-10,2030-03-11,1200.00\n";
+        String torn = "g,3\n+,104,Tour,2030-03-10,2030-03-11,1200.00\n+,105,Tour,2030-03-10,2030-03-11,1200.00\n";
+        int[] consumed = new int[1];
+        assertEquals(Arrays.asList("+:101", "g:2 102 103"), parse(complete + torn, consumed));
+        assertEquals(complete.getBytes(StandardCharsets.UTF_8).length, consumed[0]);
+    }
+
+    @Test
+    void recordWithoutItsNewlineWaitsForTheRest() {
+        String complete = "-,101,2030-03-10\n";
+        int[] consumed = new int[1];
+        assertEquals(Collections.singletonList("-:101"), parse(complete + "+,102,Bo", consumed));
+        assertEquals(complete.length(), consumed[0]);
+    }
+
+    @Test
+    void tornGroupCompletesOnTheNextPass() {
+        String journal = "g,2\n+,104,Tour,2030-03-10,2030-03-11,1200.00\n+,105,Tour,2030-03-10,2030-03-11,1200.00\n";
+        int[] consumed = new int[1];
+        String firstPart = journal.substring(0, journal.indexOf("+,105"));
+        assertEquals(Collections.emptyList(), parse(firstPart, consumed));
+        assertEquals(0, consumed[0]);
+        assertEquals(Collections.singletonList("g:2 104 105"), parse(journal, consumed));
+        assertEquals(journal.length(), consumed[0]);
+    }
+
+    @Test
+    void originTagIsSplitFromTheOp() {
+        int[] consumed = new int[1];
+        assertEquals(Arrays.asList("x:101 from 3f9a0c1e", "r+:301 from 3f9a0c1e"),
+                parse("x@3f9a0c1e,101\nr+@3f9a0c1e,301,Suite,5000.0\n", consumed));
+    }
+
+    @Test
+    void badRecordIsSkippedAndReplayGoesOn() {
+        int[] consumed = new int[1];
+        String journal = "g,notanumber\n-,101,2030-03-10\n";
+        assertEquals(Collections.singletonList("-:101"), parse(journal, consumed));
+        assertEquals(journal.length(), consumed[0]);
+    }
+}
@@ -0,0 +1,141 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.MonthlyPartitions;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static hotel.HotelReservationSystem.engine;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Monthly segment storage in a temp directory, over the application's engine: migration from an in-memory
+// data set, lazy startup, on-demand thaw of archived months and segment rewrites.
+class MonthlyPartitionsTest {
+    private static final int HOT_MONTHS = 3;
+    private static final YearMonth NOW = YearMonth.now(), OLD = NOW.minusMonths(12), MID = NOW.minusMonths(6);
+
+    private final Booking a = new Booking(101, "Ann", OLD.atDay(5), OLD.atDay(7));
+    private final Booking b = new Booking(102, "Bob", OLD.atDay(10), OLD.atDay(11));
+    private final Booking c = new Booking(101, "Cy", MID.atDay(5), MID.atDay(8));
+    private final Booking d = new Booking(103, "Dee", NOW.atDay(10), NOW.atDay(12));
+
+    @TempDir Path tmp;
+    private Path dir;   // created by the first flush, as bookings/ is
+
+    @BeforeEach
+    void setUp() {
+        dir = tmp.resolve("bookings");
+        engine.replaceRooms(Arrays.asList(new Room(101, "Std", 1000), new Room(102, "Std", 1000), new Room(103, "Suite", 2500)));
+        engine.replaceBookings(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.setLoader((from, to) -> {});
+        engine.replaceBookings(Collections.emptyList());
+        engine.replaceRooms(Collections.emptyList());
+    }
+
+    // What loadPartitions does on first start: everything is in memory and gets written out by month.
+    private void migrate() throws IOException {
+        engine.replaceBookings(Arrays.asList(a, b, c, d));
+        MonthlyPartitions p = new MonthlyPartitions(dir, HOT_MONTHS);
+        assertFalse(p.open());
+        p.adoptAll();
+        p.flush();
+        engine.replaceBookings(Collections.emptyList());
+    }
+
+    private MonthlyPartitions reopen() throws IOException {
+        engine.replaceBookings(Collections.emptyList());
+        MonthlyPartitions p = new MonthlyPartitions(dir, HOT_MONTHS);
+        engine.setLoader(p::ensureLoaded);
+        assertTrue(p.open());
+        return p;
+    }
+
+    private static String row(Booking s) { return s.roomNumber + "," + s.customer + "," + s.date + "," + s.checkOut + ","; }
+
+    private List<String> lines(String file) throws IOException {
+        Path p = dir.resolve(file);
+        InputStream in = Files.newInputStream(p);
+        if (file.endsWith(".gz")) in = new GZIPInputStream(in);
+        List<String> out = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String ln; (ln = r.readLine()) != null; ) out.add(ln);
+        }
+        return out;
+    }
+
+    @Test
+    void migrationWritesOneSegmentPerMonthAndArchivesClosedMonths() throws IOException {
+        migrate();
+        assertEquals(Arrays.asList(row(a), row(b)), lines(OLD + ".csv.gz"));
+        assertEquals(Collections.singletonList(row(c)), lines(MID + ".csv.gz"));
+        assertEquals(Collections.singletonList(row(d)), lines(NOW + ".csv"));
+        assertFalse(Files.exists(dir.resolve(OLD + ".csv")));
+        assertFalse(Files.exists(dir.resolve(NOW + ".csv.gz")));
+        assertEquals(Arrays.asList(
+                OLD + ",2," + b.checkOut + ",1",
+                MID + ",1," + c.checkOut + ",1",
+                NOW + ",1," + d.checkOut + ",0"), lines("manifest.csv"));
+    }
+
+    @Test
+    void startupLoadsTheHotWindowAndOlderMonthsThawOnDemand() throws IOException {
+        migrate();
+        reopen();
+        assertEquals(1, engine.bookingCount());
+        assertNull(engine.bookingAt(101, c.date));
+
+        // only the months whose stays reach into the range come in
+        engine.ensureLoaded(MID.atDay(1), MID.plusMonths(1).atDay(1));
+        assertEquals(2, engine.bookingCount());
+        assertEquals("Cy", engine.bookingAt(101, c.date).customer);
+        assertNull(engine.bookingAt(101, a.date));
+
+        engine.ensureLoaded(OLD.atDay(1), OLD.plusMonths(1).atDay(1));
+        assertEquals(4, engine.bookingCount());
+        assertEquals("Ann", engine.bookingAt(101, a.date).customer);
+        assertEquals("Bob", engine.bookingAt(102, b.date).customer);
+    }
+
+    @Test
+    void flushRewritesOnlyChangedMonthsAndKeepsStaysStillOnDisk() throws IOException {
+        migrate();
+        MonthlyPartitions p = reopen();
+
+        Booking e = new Booking(102, "Eve", NOW.atDay(10), NOW.atDay(12));
+        assertNull(engine.reserve(e));
+        p.booked(e);
+        // after every stay of the archived month: nothing there needs to be thawed to check it
+        Booking f = new Booking(103, "Fay", OLD.atDay(20), OLD.atDay(21));
+        assertNull(engine.reserve(f));
+        p.booked(f);
+        assertNull(engine.bookingAt(101, a.date));
+        long midModified = Files.getLastModifiedTime(dir.resolve(MID + ".csv.gz")).toMillis();
+
+        p.flush();
+        assertEquals(Arrays.asList(row(e), row(d)), lines(NOW + ".csv"));   // check-in, then room order
+        // the archived month is written back with its stored stays, still compressed
+        assertEquals(Arrays.asList(row(a), row(b), row(f)), lines(OLD + ".csv.gz"));
+        assertEquals(midModified, Files.getLastModifiedTime(dir.resolve(MID + ".csv.gz")).toMillis());
+        assertTrue(lines("manifest.csv").contains(OLD + ",3," + f.checkOut + ",1"));
+        assertTrue(lines("manifest.csv").contains(NOW + ",2," + e.checkOut + ",0"));
+
+        reopen();
+        engine.ensureLoaded(LocalDate.MIN, LocalDate.MAX);
+        assertEquals(6, engine.bookingCount());
+    }
+}
@@ -0,0 +1,157 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Analytics;
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.BookingEngine;
+import hotel.HotelReservationSystem.Pricing;
+import hotel.HotelReservationSystem.Pricing.Kind;
+import hotel.HotelReservationSystem.Pricing.Rule;
+import hotel.HotelReservationSystem.Room;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Rate plans: quotes from the precomputed tables against a plain scan of the rules, and parse errors.
+class PricingTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    // The documented pricing, rule by rule and night by night, with occupancy counted from the stays themselves.
+    private static double naiveQuote(List<Rule> rules, List<Room> rooms, List<Booking> stays, Room room, LocalDate from, LocalDate to) {
+        double base = room.price;
+        for (Rule r : rules) if (r.kind == Kind.BASE && r.matches(room.type)) base = r.value;
+        int ofType = 0;
+        for (Room x : rooms) if (x.type.equalsIgnoreCase(room.type)) ofType++;
+        double total = 0;
+        for (LocalDate d = from; d.isBefore(to); d = d.plusDays(1)) {
+            double mult = 1, add = 0;
+            for (Rule r : rules) {
+                if (!r.matches(room.type)) continue;
+                boolean hit = r.kind == Kind.SEASON ? !d.isBefore(r.from) && !d.isAfter(r.to)
+                        : r.kind == Kind.WEEKDAY && r.days.contains(d.getDayOfWeek());
+                if (!hit) continue;
+                if (r.percent) mult *= 1 + r.value / 100; else add += r.value;
+            }
+            double rate = base * mult + add;
+            int booked = 0;
+            for (Booking b : stays) {
+                if (b.date.isAfter(d) || !b.checkOut.isAfter(d)) continue;
+                for (Room x : rooms) if (x.number == b.roomNumber && x.type.equalsIgnoreCase(room.type)) booked++;
+            }
+            double occ = 100.0 * booked / ofType;
+            Rule best = null;
+            for (Rule r : rules)
+                if (r.kind == Kind.OCCUPANCY && r.matches(room.type) && occ >= r.threshold && (best == null || r.threshold > best.threshold)) best = r;
+            if (best != null) rate = best.adjust(rate, 1);
+            total += Math.max(0, rate);
+        }
+        int nights = (int) (to.toEpochDay() - from.toEpochDay());
+        Rule best = null;
+        for (Rule r : rules)
+            if (r.kind == Kind.STAY && r.matches(room.type) && nights >= r.threshold && (best == null || r.threshold > best.threshold)) best = r;
+        if (best != null) total = best.adjust(total, nights);
+        return Math.max(0, Math.round(total * 100) / 100.0);
+    }
+
+    private static String adjustment(Random rnd) {
+        return rnd.nextBoolean() ? (rnd.nextInt(61) - 30) + "%" : Integer.toString(rnd.nextInt(801) - 400);
+    }
+
+    @Test
+    void tableQuotesMatchARuleScan() {
+        Random rnd = new Random(17);
+        BookingEngine eng = new BookingEngine();
+        List<Room> rooms = new ArrayList<>();
+        for (int i = 0; i < 6; i++) rooms.add(new Room(101 + i, "Std", 1000 + 50 * i));
+        for (int i = 0; i < 3; i++) rooms.add(new Room(201 + i, "Suite", 2500));
+        for (Room r : rooms) eng.addRoom(r);
+        for (int i = 0; i < 400; i++) {
+            LocalDate in = TODAY.plusDays(rnd.nextInt(120) - 20);
+            eng.reserve(new Booking(rooms.get(rnd.nextInt(rooms.size())).number, "G" + i, in, in.plusDays(1 + rnd.nextInt(4))));
+        }
+        List<Booking> stays = new ArrayList<>(eng.bookings());
+        Pricing pricing = new Pricing(new Analytics(eng));
+
+        String[] types = {"*", "Std", "suite"};   // rule types match room types in any case
+        for (int plan = 0; plan < 20; plan++) {
+            List<String> lines = new ArrayList<>();
+            if (rnd.nextBoolean()) lines.add("base,Suite," + (2000 + rnd.nextInt(1000)));
+            for (int i = 0, n = rnd.nextInt(12); i < n; i++) {
+                String type = types[rnd.nextInt(types.length)];
+                switch (rnd.nextInt(4)) {
+                    case 0: {
+                        // some seasons run past the end of the precomputed tables
+                        LocalDate s = TODAY.plusDays(rnd.nextInt(1200) - 400);
+                        lines.add("season," + type + "," + s + "," + s.plusDays(rnd.nextInt(60)) + "," + adjustment(rnd));
+                        break;
+                    }
+                    case 1:
+                        lines.add("weekday," + type + "," + DayOfWeek.of(1 + rnd.nextInt(7)) + " " + DayOfWeek.of(1 + rnd.nextInt(7)) + "," + adjustment(rnd));
+                        break;
+                    case 2:
+                        lines.add("occupancy," + type + "," + (10 * rnd.nextInt(10)) + "," + adjustment(rnd));
+                        break;
+                    default:
+                        lines.add("stay," + type + "," + (1 + rnd.nextInt(10)) + "," + adjustment(rnd));
+                }
+            }
+            List<Rule> rules = Pricing.parse(lines);
+            pricing.setRules(rules);
+            for (int q = 0; q < 60; q++) {
+                // mostly inside the booked range, some well outside the tables in both directions
+                LocalDate in = q % 10 == 0 ? TODAY.plusDays(rnd.nextInt(2400) - 800) : TODAY.plusDays(rnd.nextInt(120) - 20);
+                LocalDate out = in.plusDays(1 + rnd.nextInt(14));
+                Room room = rooms.get(rnd.nextInt(rooms.size()));
+                assertEquals(naiveQuote(rules, rooms, stays, room, in, out), pricing.quote(room, in, out), 0.005,
+                        "room " + room.number + " " + in + ".." + out + " with " + lines);
+            }
+        }
+    }
+
+    @Test
+    void quoterSharesOccupancyAcrossRoomsWithoutChangingQuotes() {
+        BookingEngine eng = new BookingEngine();
+        Room a = new Room(101, "Std", 1000), b = new Room(102, "Std", 1000);
+        eng.addRoom(a); eng.addRoom(b);
+        eng.reserve(new Booking(101, "Ann", TODAY, TODAY.plusDays(2)));
+        Pricing pricing = new Pricing(new Analytics(eng));
+        pricing.setRules(Pricing.parse(Arrays.asList("occupancy,*,50,+20%", "stay,Std,3,-100")));
+        Pricing.Quoter q = pricing.quoter(TODAY, TODAY.plusDays(3));
+        // nights 1 and 2 are half booked: 1200 + 1200 + 1000, then 100 off per night for a three-night stay
+        assertEquals(3100.0, q.quote(b));
+        assertEquals(q.quote(b), pricing.quote(a, TODAY, TODAY.plusDays(3)));
+    }
+
+    @Test
+    void parseErrorsNameTheLineOfTheFile() {
+        List<String> lines = Arrays.asList(
+                "# rates",
+                "base,Deluxe,3200",
+                "",
+                "season,*,2030-12-20,2031-01-05,+30%  # holidays",
+                "weekday,*,FRI SAT,+15%");
+        assertEquals(3, Pricing.parse(lines).size());
+
+        assertParseError("line 2: unknown rule 'seasn': seasn,*,2030-12-20,2031-01-05,+30%",
+                "# rates", "seasn,*,2030-12-20,2031-01-05,+30%");
+        assertParseError("line 3: expected 4 fields: weekday,*,+15%",
+                "base,Deluxe,3200", "", "weekday,*,+15%");
+        assertParseError("line 1: unknown day 'FRY': weekday,*,FRY,+15%", "weekday,*,FRY,+15%");
+        assertParseError("line 2: season ends before it starts: season,*,2031-01-05,2030-12-20,+30%",
+                "# comment only", "season,*,2031-01-05,2030-12-20,+30%");
+        assertParseError("line 4: room type required: stay,,7,-10%",
+                "base,Std,1000", "# a", "# b", "stay,,7,-10%");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Pricing.parse(Arrays.asList("base,Std,1000", "occupancy,*,eighty,+10%")));
+        assertTrue(e.getMessage().startsWith("line 2: "), e.getMessage());
+        assertTrue(e.getMessage().endsWith(": occupancy,*,eighty,+10%"), e.getMessage());
+    }
+
+    private static void assertParseError(String expected, String... lines) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Pricing.parse(Arrays.asList(lines)));
+        assertEquals(expected, e.getMessage());
+    }
+}
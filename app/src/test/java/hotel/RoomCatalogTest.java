@@ -0,0 +1,34 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Room;
+import hotel.HotelReservationSystem.RoomCatalog;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Room type lookups in the catalog.
+class RoomCatalogTest {
+
+    @Test
+    void typeMatchingIgnoresCaseUnderAnyLocale() {
+        Locale saved = Locale.getDefault();
+        // Turkish lower-cases 'I' to a dotless 'ı', so "SUITE" and "Suite" would be different keys there
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            RoomCatalog cat = new RoomCatalog();
+            cat.replaceAll(Arrays.asList(new Room(101, "Suite", 3000), new Room(102, "Std", 1000), new Room(103, "SUITE", 3200)));
+            assertEquals(Arrays.asList(101, 103), numbers(cat.search("suite", 0, Double.MAX_VALUE)));
+            assertEquals(Arrays.asList(101, 103), numbers(cat.search("SUITE", 0, Double.MAX_VALUE)));
+            assertEquals(Collections.singletonList(103), numbers(cat.search("Suite", 3100, 4000)));
+            assertEquals(2, cat.types().size());
+        } finally { Locale.setDefault(saved); }
+    }
+
+    private static List<Integer> numbers(List<Room> rooms) {
+        List<Integer> out = new ArrayList<>();
+        for (Room r : rooms) out.add(r.number);
+        return out;
+    }
+}
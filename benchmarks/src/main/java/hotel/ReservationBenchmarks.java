@@ -0,0 +1,244 @@
+package hotel;
+
+import hotel.HotelReservationSystem.Booking;
+import hotel.HotelReservationSystem.Room;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static hotel.HotelReservationSystem.engine;
+
+// Baseline for the reservation core. Every benchmark runs against a synthetic hotel of `rooms` rooms
+// and `bookings` stays of 1-3 nights, persisted to a temp data directory.
+// Lives in package hotel so it can reach the package-private core without widening its API.
+//
+// Build and run:  mvn -q package && java -jar benchmarks/target/benchmarks.jar [regex] [-p rooms=300]
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationBenchmarks {
+
+    @Param({"50", "300"})
+    int rooms;
+
+    @Param({"10000", "100000"})
+    int bookings;
+
+    private static final int PROBES = 1024;
+
+    private Path dir;
+    private final LocalDate[] probeDates = new LocalDate[PROBES];
+    private final int[] probeRooms = new int[PROBES];
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("hrs-bench");
+        // data file paths are fixed when HotelReservationSystem initializes, so set these before touching it
+        System.setProperty("hrs.dataDir", dir.toString());
+        System.setProperty("hrs.journal", "false");
+
+        Random rnd = new Random(42);
+        List<Room> rs = new ArrayList<>();
+        for (int i = 0; i < rooms; i++) rs.add(new Room(100 + i, i % 3 == 0 ? "Suite" : "Std", 1000.0 + 500 * (i % 3)));
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Booking> bs = new ArrayList<>(bookings);
+        int[] nextFree = new int[rooms];
+        for (int i = 0; i < bookings; i++) {
+            int r = i % rooms, n = 1 + rnd.nextInt(3);
+            LocalDate in = start.plusDays(nextFree[r] += rnd.nextInt(2));
+            bs.add(new Booking(100 + r, "Guest" + rnd.nextInt(5000), in, in.plusDays(n)));
+            nextFree[r] += n;
+        }
+        int span = Arrays.stream(nextFree).max().orElse(1);
+        for (int i = 0; i < PROBES; i++) {
+            probeDates[i] = start.plusDays(rnd.nextInt(span));
+            probeRooms[i] = 100 + rnd.nextInt(rooms);
+        }
+
+        engine.replaceRooms(rs);
+        engine.replaceBookings(bs);
+        // a modest rate plan so availability and quoting pay for real rules
+        HotelReservationSystem.pricing.setRules(HotelReservationSystem.Pricing.parse(Arrays.asList(
+                "base,Suite,2500", "weekday,*,FRI SAT,+15%", "season,*,2020-12-20,2021-01-05,+30%",
+                "occupancy,*,80,+10%", "stay,*,7,-10%")));
+        HotelReservationSystem.saveRooms();
+        HotelReservationSystem.saveBookings();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private int nextProbe() { return probe = (probe + 1) & (PROBES - 1); }
+
+    // ----- persistence -----
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int loadRooms() {
+        HotelReservationSystem.loadRooms();
+        return engine.rooms().size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int loadBookings() {
+        HotelReservationSystem.loadBookings();
+        return engine.bookingCount();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void saveBookings() {
+        HotelReservationSystem.saveBookings();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void exportCsv() throws IOException {
+        HotelReservationSystem.exportBookingsCsv(dir.resolve("export.csv"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public int pdfReport() throws IOException {
+        return HotelReservationSystem.PdfReport.write(new File(dir.toFile(), "report.pdf"), HotelReservationSystem.PdfReport.Grouping.NONE);
+    }
+
+    // Grouped by customer: a subtotal per guest on top of the streamed rows.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public int pdfReportByCustomer() throws IOException {
+        return HotelReservationSystem.PdfReport.write(new File(dir.toFile(), "report.pdf"), HotelReservationSystem.PdfReport.Grouping.CUSTOMER);
+    }
+
+    // ----- queries -----
+
+    // The Book Room tab's availability table for one night (bitset path).
+    @Benchmark
+    public Object availabilityOneNight() {
+        LocalDate d = probeDates[nextProbe()];
+        return HotelReservationSystem.AvailabilityTableModel.query(d, d.plusDays(1));
+    }
+
+    // Same table for a week-long stay (per-room range probe).
+    @Benchmark
+    public Object availabilityWeek() {
+        LocalDate d = probeDates[nextProbe()];
+        return HotelReservationSystem.AvailabilityTableModel.query(d, d.plusDays(7));
+    }
+
+    // The occupancy index alone: one night's bitset, then a bit test per room.
+    @Benchmark
+    public int occupancyOneNight() {
+        BitSet day = engine.bookedOn(probeDates[nextProbe()]);
+        int booked = 0;
+        for (Room r : engine.rooms()) if (engine.isBooked(day, r.number)) booked++;
+        return booked;
+    }
+
+    // The overlap check doBook relies on.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean conflictCheck() {
+        int i = nextProbe();
+        return engine.isFree(probeRooms[i], probeDates[i], probeDates[i].plusDays(3));
+    }
+
+    // The Search tab: Suite-priced rooms free for 3 consecutive nights in the next 60 days, first page.
+    @Benchmark
+    public int searchSixtyDays() {
+        LocalDate d = probeDates[nextProbe()];
+        return HotelReservationSystem.AvailabilitySearch.search(new HotelReservationSystem.AvailabilitySearch.Criteria(
+                "Suite", 0, 3000, 3, d, d.plusDays(60)), 0, 100, h -> {});
+    }
+
+    // Any room free for a week anywhere in a year-long window: the bitmap AND/shift pass over every room.
+    @Benchmark
+    public int searchYear() {
+        LocalDate d = probeDates[nextProbe()];
+        return HotelReservationSystem.AvailabilitySearch.search(new HotelReservationSystem.AvailabilitySearch.Criteria(
+                null, 0, Double.MAX_VALUE, 7, d, d.plusDays(365)), 0, 100, h -> {});
+    }
+
+    // Dashboard figures for a 30-day window from the analytics rollups.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object analyticsMonth() {
+        LocalDate d = probeDates[nextProbe()];
+        return HotelReservationSystem.analytics.range(null, d, d.plusDays(30));
+    }
+
+    // The Dashboard tab's default view: a quarter by week, then per room type.
+    @Benchmark
+    public int analyticsDashboard() {
+        LocalDate d = probeDates[nextProbe()];
+        return HotelReservationSystem.analytics.report(d, d.plusDays(91), HotelReservationSystem.Analytics.Granularity.WEEK,
+                HotelReservationSystem.Analytics.Breakdown.PERIOD).size()
+                + HotelReservationSystem.analytics.report(d, d.plusDays(91), HotelReservationSystem.Analytics.Granularity.WEEK,
+                HotelReservationSystem.Analytics.Breakdown.ROOM_TYPE).size();
+    }
+
+    // A week's quote for one room: table reads per night plus the occupancy and stay rules.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double quoteWeek() {
+        int i = nextProbe();
+        return HotelReservationSystem.pricing.quote(engine.room(probeRooms[i]), probeDates[i], probeDates[i].plusDays(7));
+    }
+
+    // Quoting a week for every room, as each availability refresh and search does: one rate-table
+    // read per room and night, however many rules the plan has.
+    @Benchmark
+    public double quoteAllRoomsWeek() {
+        LocalDate d = probeDates[nextProbe()];
+        HotelReservationSystem.Pricing.Quoter q = HotelReservationSystem.pricing.quoter(d, d.plusDays(7));
+        double sum = 0;
+        for (Room r : engine.rooms()) sum += q.quote(r);
+        return sum;
+    }
+
+    // What every instrumented call pays on top of its own work.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void metricsRecord() {
+        HotelReservationSystem.Metrics.stop(HotelReservationSystem.Metrics.Op.AVAILABILITY, HotelReservationSystem.Metrics.start());
+    }
+
+    // A full doBook round trip on the engine: the conflict check plus the write, undone by a cancel.
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object reserveAndCancel() {
+        int i = nextProbe();
+        String refused = engine.reserve(new Booking(probeRooms[i], "Bench", probeDates[i], probeDates[i].plusDays(1)));
+        return refused != null ? refused : engine.cancel(probeRooms[i], probeDates[i]);
+    }
+
+    // A 20-room block through reserveAll (one validation pass, one listener call), undone room by room.
+    @Benchmark
+    public Object groupReserveAndCancel() {
+        int i = nextProbe();
+        List<Booking> group = new ArrayList<>(20);
+        for (int k = 0; k < 20; k++) group.add(new Booking(100 + (probeRooms[i] - 100 + k) % rooms, "Bench", probeDates[i], probeDates[i].plusDays(2)));
+        String[] refused = engine.reserveAll(group);
+        if (refused == null) for (Booking b : group) engine.cancel(b.roomNumber, b.date);
+        return refused;
+    }
+}